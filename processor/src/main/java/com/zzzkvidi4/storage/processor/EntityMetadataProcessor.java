@@ -0,0 +1,374 @@
+package com.zzzkvidi4.storage.processor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Processor generating {@code <Entity>_Metadata} implementations of {@code EntityMetadata}
+ * for every class with {@code @Table} or {@code @Column} fields.
+ * Classes which can not be accessed without reflection are skipped, repository falls back to reflection for them.
+ */
+@SupportedAnnotationTypes({EntityMetadataProcessor.TABLE, EntityMetadataProcessor.COLUMN})
+public final class EntityMetadataProcessor extends AbstractProcessor {
+    static final String TABLE = "com.zzzkvidi4.storage.annotation.Table";
+    static final String COLUMN = "com.zzzkvidi4.storage.annotation.Column";
+    private static final String ID = "com.zzzkvidi4.storage.annotation.Id";
+    private static final String SUFFIX = "_Metadata";
+    private static final String COLUMN_TYPE = "com.zzzkvidi4.storage.repository.ColumnType";
+    /**
+     * Supported field types with names of {@code ColumnType} constants.
+     */
+    private static final Map<String, String> COLUMN_TYPES = new HashMap<>();
+    /**
+     * Boxed types of supported primitive field types.
+     */
+    private static final Map<String, String> BOXED_TYPES = new HashMap<>();
+    /**
+     * Suffixes of result set and statement accessors for types read without boxing.
+     */
+    private static final Map<String, String> DIRECT_ACCESSORS = new HashMap<>();
+
+    static {
+        COLUMN_TYPES.put("java.lang.String", "STRING");
+        COLUMN_TYPES.put("java.time.Instant", "INSTANT");
+        COLUMN_TYPES.put("java.time.LocalDate", "LOCAL_DATE");
+        COLUMN_TYPES.put("int", "INT");
+        COLUMN_TYPES.put("java.lang.Integer", "INT");
+        COLUMN_TYPES.put("long", "LONG");
+        COLUMN_TYPES.put("java.lang.Long", "LONG");
+        COLUMN_TYPES.put("double", "DOUBLE");
+        COLUMN_TYPES.put("java.lang.Double", "DOUBLE");
+        BOXED_TYPES.put("int", "java.lang.Integer");
+        BOXED_TYPES.put("long", "java.lang.Long");
+        BOXED_TYPES.put("double", "java.lang.Double");
+        DIRECT_ACCESSORS.put("java.lang.String", "String");
+        DIRECT_ACCESSORS.put("int", "Int");
+        DIRECT_ACCESSORS.put("long", "Long");
+        DIRECT_ACCESSORS.put("double", "Double");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(@NotNull Set<? extends TypeElement> annotations, @NotNull RoundEnvironment roundEnv) {
+        Set<TypeElement> entities = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    entities.add((TypeElement) element);
+                } else if (element.getKind() == ElementKind.FIELD) {
+                    entities.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement entity : entities) {
+            List<ColumnInfo> columns = collectColumns(entity);
+            if (columns != null) {
+                generate(entity, columns);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to collect columns of entity.
+     *
+     * @param entity - entity class
+     * @return       - columns or {@literal null} if metadata can not be generated
+     */
+    @Nullable
+    private List<ColumnInfo> collectColumns(@NotNull TypeElement entity) {
+        if (entity.getNestingKind() != NestingKind.TOP_LEVEL
+                || entity.getModifiers().contains(Modifier.PRIVATE)
+                || entity.getModifiers().contains(Modifier.ABSTRACT)
+                || !entity.getTypeParameters().isEmpty()
+                || !"java.lang.Object".equals(entity.getSuperclass().toString())
+                || !hasNoArgumentsConstructor(entity)) {
+            return null;
+        }
+        List<ColumnInfo> columns = new ArrayList<>();
+        Set<String> names = new LinkedHashSet<>();
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            AnnotationMirror column = findAnnotation(field, COLUMN);
+            if (column == null || field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String name = annotationValue(column);
+            String type = typeName(field.asType());
+            String columnType = COLUMN_TYPES.get(type);
+            String getter = accessor(entity, field, "get", 0);
+            String setter = accessor(entity, field, "set", 1);
+            if (name == null || columnType == null || getter == null || setter == null) {
+                return null;
+            }
+            if (names.add(name)) {
+                boolean id = findAnnotation(field, ID) != null;
+                columns.add(new ColumnInfo(name, field.getSimpleName().toString(), type, columnType, getter, setter, id));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Method to find expression to access field from generated class in the same package.
+     *
+     * @param entity         - entity class
+     * @param field          - field
+     * @param prefix         - accessor prefix
+     * @param parameterCount - count of accessor parameters
+     * @return               - accessor expression with {@code %s} in place of value or {@literal null}
+     */
+    @Nullable
+    private String accessor(@NotNull TypeElement entity, @NotNull VariableElement field, @NotNull String prefix, int parameterCount) {
+        String fieldName = field.getSimpleName().toString();
+        String methodName = prefix + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        boolean declared = false;
+        for (ExecutableElement method : ElementFilter.methodsIn(entity.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals(methodName) && method.getParameters().size() == parameterCount) {
+                if (method.getModifiers().contains(Modifier.PRIVATE)) {
+                    return null;
+                }
+                declared = true;
+            }
+        }
+        boolean generated = findAnnotation(entity, "lombok.Data") != null
+                || findAnnotation(entity, "lombok." + ("get".equals(prefix) ? "Getter" : "Setter")) != null
+                || findAnnotation(field, "lombok." + ("get".equals(prefix) ? "Getter" : "Setter")) != null;
+        if (declared || generated && !(parameterCount == 1 && field.getModifiers().contains(Modifier.FINAL))) {
+            return parameterCount == 0 ? "entity." + methodName + "()" : "entity." + methodName + "(%s)";
+        }
+        if (field.getModifiers().contains(Modifier.PRIVATE) || parameterCount == 1 && field.getModifiers().contains(Modifier.FINAL)) {
+            return null;
+        }
+        return parameterCount == 0 ? "entity." + fieldName : "entity." + fieldName + " = %s";
+    }
+
+    private boolean hasNoArgumentsConstructor(@NotNull TypeElement entity) {
+        if (findAnnotation(entity, "lombok.NoArgsConstructor") != null) {
+            return true;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to get type name without type annotations.
+     *
+     * @param type - type
+     * @return     - primitive or qualified class name
+     */
+    @NotNull
+    private String typeName(@NotNull TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return type.getKind().name().toLowerCase(Locale.ROOT);
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) processingEnv.getTypeUtils().asElement(type)).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    @Nullable
+    private static AnnotationMirror findAnnotation(@NotNull Element element, @NotNull String name) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().toString().equals(name)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String annotationValue(@NotNull AnnotationMirror annotation) {
+        return annotation.getElementValues()
+                .entrySet()
+                .stream()
+                .filter(e -> e.getKey().getSimpleName().contentEquals("value"))
+                .map(e -> (String) e.getValue().getValue())
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Method to write metadata class of entity.
+     *
+     * @param entity  - entity class
+     * @param columns - columns of entity
+     */
+    private void generate(@NotNull TypeElement entity, @NotNull List<ColumnInfo> columns) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(entity);
+        String packageName = packageElement.getQualifiedName().toString();
+        String entityName = entity.getSimpleName().toString();
+        String className = entityName + SUFFIX;
+        AnnotationMirror table = findAnnotation(entity, TABLE);
+        String tableName = table == null ? null : annotationValue(table);
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                    packageName.isEmpty() ? className : packageName + "." + className,
+                    entity
+            );
+            try (Writer writer = file.openWriter(); PrintWriter out = new PrintWriter(writer)) {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * Metadata of {@link " + entityName + "} generated by " + getClass().getSimpleName() + ".");
+                out.println(" */");
+                out.println("public final class " + className + " implements com.zzzkvidi4.storage.repository.EntityMetadata<" + entityName + "> {");
+                out.println("    private static final java.util.List<com.zzzkvidi4.storage.repository.EntityColumn<" + entityName + ">> COLUMNS = java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+                for (int i = 0; i < columns.size(); ++i) {
+                    out.println("            new " + columns.get(i).className() + "()" + (i + 1 < columns.size() ? "," : ""));
+                }
+                out.println("    ));");
+                ColumnInfo id = columns.stream().filter(c -> c.id).findFirst().orElse(null);
+                out.println("    private static final com.zzzkvidi4.storage.repository.EntityColumn<" + entityName + "> ID_COLUMN = "
+                        + (id == null ? "null" : "COLUMNS.get(" + columns.indexOf(id) + ")") + ";");
+                out.println();
+                out.println("    @Override");
+                out.println("    public Class<" + entityName + "> getEntityClass() {");
+                out.println("        return " + entityName + ".class;");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public String getTable() {");
+                out.println("        return " + (tableName == null ? "null" : "\"" + tableName + "\"") + ";");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public java.util.List<com.zzzkvidi4.storage.repository.EntityColumn<" + entityName + ">> getColumns() {");
+                out.println("        return COLUMNS;");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public com.zzzkvidi4.storage.repository.EntityColumn<" + entityName + "> getIdColumn() {");
+                out.println("        return ID_COLUMN;");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public " + entityName + " newInstance() {");
+                out.println("        return new " + entityName + "();");
+                out.println("    }");
+                for (ColumnInfo column : columns) {
+                    out.println();
+                    writeColumn(out, entityName, column);
+                }
+                out.println("}");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Metadata was not generated: " + e.getMessage(), entity);
+        }
+    }
+
+    private void writeColumn(@NotNull PrintWriter out, @NotNull String entityName, @NotNull ColumnInfo column) {
+        String columnType = COLUMN_TYPE + "." + column.columnType;
+        String direct = DIRECT_ACCESSORS.get(column.type);
+        String read = direct != null
+                ? "resultSet.get" + direct + "(index)"
+                : "(" + column.type + ") " + columnType + ".read(resultSet, index)";
+        String write = direct != null
+                ? "statement.set" + direct + "(index, " + column.getter + ")"
+                : columnType + ".write(statement, index, " + column.getter + ")";
+        out.println("    private static final class " + column.className() + " implements com.zzzkvidi4.storage.repository.EntityColumn<" + entityName + "> {");
+        out.println("        @Override");
+        out.println("        public String getName() {");
+        out.println("            return \"" + column.name + "\";");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public " + COLUMN_TYPE + " getType() {");
+        out.println("            return " + columnType + ";");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public void read(java.sql.ResultSet resultSet, int index, " + entityName + " entity) throws java.sql.SQLException {");
+        out.println("            " + String.format(column.setter, read) + ";");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public void write(java.sql.PreparedStatement statement, int index, " + entityName + " entity) throws java.sql.SQLException {");
+        out.println("            " + write + ";");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public Object getValue(" + entityName + " entity) {");
+        out.println("            return " + column.getter + ";");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public void setValue(" + entityName + " entity, Object value) {");
+        out.println("            " + String.format(column.setter, "(" + BOXED_TYPES.getOrDefault(column.type, column.type) + ") value") + ";");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /**
+     * Information about column collected from source.
+     */
+    private static final class ColumnInfo {
+        @NotNull
+        private final String name;
+        @NotNull
+        private final String field;
+        @NotNull
+        private final String type;
+        @NotNull
+        private final String columnType;
+        @NotNull
+        private final String getter;
+        @NotNull
+        private final String setter;
+        private final boolean id;
+
+        private ColumnInfo(@NotNull String name, @NotNull String field, @NotNull String type, @NotNull String columnType, @NotNull String getter, @NotNull String setter, boolean id) {
+            this.name = name;
+            this.field = field;
+            this.type = type;
+            this.columnType = columnType;
+            this.getter = getter;
+            this.setter = setter;
+            this.id = id;
+        }
+
+        @NotNull
+        private String className() {
+            return Character.toUpperCase(field.charAt(0)) + field.substring(1) + "Column";
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.zzzkvidi4.storage.benchmark;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import com.zzzkvidi4.storage.generator.DataGenerator;
+import com.zzzkvidi4.storage.generator.GeneratorSettings;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.repository.ItemRepository;
+import com.zzzkvidi4.storage.repository.OrganizationRepository;
+import org.flywaydb.core.Flyway;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Embedded PostgreSQL with all migrations applied, filled with generated data of given size for one trial.
+ * Data depends only on size, so results of runs are comparable.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+    @NotNull
+    static final LocalDate FIRST_DAY = LocalDate.of(2019, 1, 1);
+    static final int DAY_COUNT = 365;
+    static final int ITEMS_PER_INVOICE = 10;
+    private static final long SEED = 42;
+
+    /**
+     * Count of invoice items, other tables are sized proportionally.
+     */
+    @Param({"1000", "10000", "100000"})
+    int invoiceItemCount;
+    @NotNull
+    EmbeddedPostgres postgres;
+    @NotNull
+    DataSource dataSource;
+    @NotNull
+    OrganizationRepository organizationRepository;
+    @NotNull
+    ItemRepository itemRepository;
+    @NotNull
+    InvoiceRepository invoiceRepository;
+    @NotNull
+    InvoiceItemRepository invoiceItemRepository;
+    int itemCount;
+    int invoiceCount;
+    /**
+     * Count of generated invoice items, it is close to {@link #invoiceItemCount}.
+     */
+    long generatedInvoiceItemCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        String url = postgres.getJdbcUrl("postgres", "postgres");
+        new Flyway(Flyway.configure().dataSource(url, "postgres", null)).migrate();
+        dataSource = new DataSource(url, "postgres", "postgres");
+        organizationRepository = new OrganizationRepository(dataSource);
+        itemRepository = new ItemRepository(dataSource);
+        invoiceRepository = new InvoiceRepository(dataSource);
+        invoiceItemRepository = new InvoiceItemRepository(dataSource);
+        fill();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataSource.close();
+        postgres.close();
+    }
+
+    /**
+     * Method to get id of existing invoice item.
+     *
+     * @param random - random source
+     * @return       - id
+     */
+    @NotNull
+    String randomInvoiceItemId(@NotNull Random random) {
+        return String.valueOf(random.nextInt((int) generatedInvoiceItemCount));
+    }
+
+    /**
+     * Method to fill tables by generator, every invoice has {@link #ITEMS_PER_INVOICE} items on average.
+     * Statistics are collected afterwards, so plans do not depend on autovacuum timing.
+     */
+    private void fill() {
+        invoiceCount = Math.max(1, invoiceItemCount / ITEMS_PER_INVOICE);
+        itemCount = Math.max(ITEMS_PER_INVOICE, invoiceItemCount / 50);
+        GeneratorSettings settings = GeneratorSettings.builder()
+                .seed(SEED)
+                .organizationCount(Math.max(ITEMS_PER_INVOICE, invoiceCount / 10))
+                .itemCount(itemCount)
+                .invoiceCount(invoiceCount)
+                .itemsPerInvoice(ITEMS_PER_INVOICE)
+                .firstDay(FIRST_DAY)
+                .dayCount(DAY_COUNT)
+                .build();
+        DataGenerator generator = new DataGenerator(organizationRepository, itemRepository, invoiceRepository, invoiceItemRepository);
+        generatedInvoiceItemCount = generator.generate(settings).getInvoiceItemCount();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.zzzkvidi4.storage.benchmark;
+
+import com.zzzkvidi4.storage.model.Item;
+import com.zzzkvidi4.storage.model.Organization;
+import com.zzzkvidi4.storage.repository.Pair;
+import com.zzzkvidi4.storage.service.InvoiceService;
+import com.zzzkvidi4.storage.service.OrganizationService;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of reports of services against embedded PostgreSQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+    @NotNull
+    private static final LocalDate END = BenchmarkDatabase.FIRST_DAY.plusDays(BenchmarkDatabase.DAY_COUNT);
+    @NotNull
+    private InvoiceService invoiceService;
+    @NotNull
+    private OrganizationService organizationService;
+    @NotNull
+    private List<Pair<String, Double>> itemsWithVolume;
+
+    @Setup
+    public void setUp(@NotNull BenchmarkDatabase database) {
+        invoiceService = new InvoiceService(database.invoiceRepository, database.invoiceItemRepository);
+        organizationService = new OrganizationService(database.organizationRepository);
+        itemsWithVolume = Arrays.asList(new Pair<>("0", 10.0), new Pair<>("1", 10.0));
+    }
+
+    /**
+     * Summaries of past days are memoized by service, so they are dropped to measure request.
+     */
+    @Benchmark
+    public InvoiceService.DailyInvoiceSummary dailyInvoiceSummary() {
+        invoiceService.invalidateDailySummaries();
+        return invoiceService.getDailyInvoiceSummary(BenchmarkDatabase.FIRST_DAY, END);
+    }
+
+    @Benchmark
+    public Double averagePrice() {
+        return invoiceService.getAveragePrice(BenchmarkDatabase.FIRST_DAY, END);
+    }
+
+    @Benchmark
+    public List<Organization> tenTheMostActiveOrganizations() {
+        return organizationService.findTenTheMostActiveOrganizations();
+    }
+
+    @Benchmark
+    public List<Organization> organizationsWithItemsGreaterThan() {
+        return organizationService.findOrganizationsWithItemsGreaterThan(itemsWithVolume);
+    }
+
+    @Benchmark
+    public Map<Organization, Set<Item>> organizationsWithItems() {
+        return organizationService.getOrganizationsWithItems(BenchmarkDatabase.FIRST_DAY, BenchmarkDatabase.FIRST_DAY.plusMonths(1));
+    }
+}
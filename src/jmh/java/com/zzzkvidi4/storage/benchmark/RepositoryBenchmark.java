@@ -0,0 +1,84 @@
+package com.zzzkvidi4.storage.benchmark;
+
+import com.zzzkvidi4.storage.model.InvoiceItem;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Benchmark of repository requests against embedded PostgreSQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+    @NotNull
+    private static final String FIND_BY_INVOICE_QUERY = "SELECT * FROM invoice_item WHERE invoice_id = ?";
+    /**
+     * Item which is not part of invoice 0, so it could be added to this invoice.
+     */
+    @NotNull
+    private String freeItemId;
+
+    @Setup
+    public void setUp(@NotNull BenchmarkDatabase database) {
+        Set<String> itemIds = database.invoiceItemRepository.findAllByQuery(FIND_BY_INVOICE_QUERY, "0")
+                .stream()
+                .map(InvoiceItem::getItemId)
+                .collect(toSet());
+        freeItemId = IntStream.range(0, database.itemCount)
+                .mapToObj(String::valueOf)
+                .filter(id -> !itemIds.contains(id))
+                .findFirst()
+                .get();
+    }
+
+    @Benchmark
+    public Optional<InvoiceItem> findById(@NotNull BenchmarkDatabase database) {
+        return database.invoiceItemRepository.findById(database.randomInvoiceItemId(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    public List<InvoiceItem> findAllByQuery(@NotNull BenchmarkDatabase database) {
+        return database.invoiceItemRepository.findAllByQuery(FIND_BY_INVOICE_QUERY, String.valueOf(ThreadLocalRandom.current().nextInt(database.invoiceCount)));
+    }
+
+    @Benchmark
+    public boolean update(@NotNull BenchmarkDatabase database) {
+        Random random = ThreadLocalRandom.current();
+        InvoiceItem invoiceItem = database.invoiceItemRepository.findById(database.randomInvoiceItemId(random)).get();
+        invoiceItem.setPrice(1 + random.nextInt(1000));
+        return database.invoiceItemRepository.update(invoiceItem);
+    }
+
+    /**
+     * Item is deleted in the same invocation, so size of table does not grow during benchmark.
+     */
+    @Benchmark
+    public boolean createAndDelete(@NotNull BenchmarkDatabase database) {
+        String id = "benchmark";
+        database.invoiceItemRepository.create(new InvoiceItem(id, "0", freeItemId, 100, 1.5));
+        return database.invoiceItemRepository.deleteById(id);
+    }
+}
@@ -0,0 +1,139 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+
+/**
+ * Result set over rows kept in memory, it supports only methods used by row mapping.
+ * Same rows are read by every created result set, so benchmarks measure mapping instead of driver.
+ */
+final class InMemoryResultSet implements InvocationHandler {
+    @NotNull
+    private final String[] labels;
+    @NotNull
+    private final Object[][] rows;
+    private int row = -1;
+    private boolean wasNull = false;
+
+    private InMemoryResultSet(@NotNull String[] labels, @NotNull Object[][] rows) {
+        this.labels = labels;
+        this.rows = rows;
+    }
+
+    /**
+     * Method to create result set positioned before first row.
+     *
+     * @param labels - column labels
+     * @param rows   - values of rows in order of labels, values are of JDBC types, e.g. {@link Timestamp}
+     * @return       - result set
+     */
+    @NotNull
+    static ResultSet of(@NotNull String[] labels, @NotNull Object[][] rows) {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                new InMemoryResultSet(labels, rows)
+        );
+    }
+
+    @Override
+    public Object invoke(@NotNull Object proxy, @NotNull Method method, Object[] args) {
+        switch (method.getName()) {
+            case "next":
+                return ++row < rows.length;
+            case "getMetaData":
+                return Proxy.newProxyInstance(
+                        ResultSetMetaData.class.getClassLoader(),
+                        new Class<?>[]{ResultSetMetaData.class},
+                        this::invokeMetaData
+                );
+            case "wasNull":
+                return wasNull;
+            case "close":
+                return null;
+            case "getString":
+            case "getTimestamp":
+            case "getDate":
+                return get((Integer) args[0]);
+            case "getInt": {
+                Object value = get((Integer) args[0]);
+                return value == null ? 0 : ((Number) value).intValue();
+            }
+            case "getLong": {
+                Object value = get((Integer) args[0]);
+                return value == null ? 0L : ((Number) value).longValue();
+            }
+            case "getDouble": {
+                Object value = get((Integer) args[0]);
+                return value == null ? 0.0 : ((Number) value).doubleValue();
+            }
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private Object invokeMetaData(@NotNull Object proxy, @NotNull Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getColumnCount":
+                return labels.length;
+            case "getColumnLabel":
+            case "getColumnName":
+                return labels[(Integer) args[0] - 1];
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private Object get(int index) {
+        Object value = rows[row][index - 1];
+        wasNull = value == null;
+        return value;
+    }
+
+    /**
+     * Method to create rows of {@code invoice_item} table, including column which is not mapped to entity.
+     *
+     * @param count - count of rows
+     * @return      - rows
+     */
+    @NotNull
+    static Object[][] invoiceItemRows(int count) {
+        Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; ++i) {
+            rows[i] = new Object[]{String.valueOf(i), String.valueOf(i / 10), String.valueOf(i % 100), i % 1000, i % 100 + 0.5, Date.valueOf("2019-08-06")};
+        }
+        return rows;
+    }
+
+    /**
+     * Method to create rows of {@code invoice} table.
+     *
+     * @param count - count of rows
+     * @return      - rows
+     */
+    @NotNull
+    static Object[][] invoiceRows(int count) {
+        Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; ++i) {
+            rows[i] = new Object[]{String.valueOf(i), Timestamp.valueOf("2019-08-06 12:00:00"), String.valueOf(i % 100)};
+        }
+        return rows;
+    }
+
+    @NotNull
+    static String[] invoiceItemLabels() {
+        return new String[]{"invoice_item_id", "invoice_id", "item_id", "price", "volume", "invoice_date"};
+    }
+
+    @NotNull
+    static String[] invoiceLabels() {
+        return new String[]{"invoice_id", "date", "organization_id"};
+    }
+}
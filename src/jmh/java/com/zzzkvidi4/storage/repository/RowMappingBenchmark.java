@@ -0,0 +1,77 @@
+package com.zzzkvidi4.storage.repository;
+
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of mapping of rows to entities by {@link Repository#listEntities}, rows are read from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMappingBenchmark {
+    @Param({"100", "10000"})
+    private int rowCount;
+    /**
+     * Metadata generated by annotation processor or built with reflection.
+     */
+    @Param({"generated", "reflective"})
+    private String metadataKind;
+    @NotNull
+    private Object[][] invoiceItemRows;
+    @NotNull
+    private Object[][] invoiceRows;
+    @NotNull
+    private EntityMetadata<InvoiceItem> invoiceItemMetadata;
+    @NotNull
+    private EntityMetadata<Invoice> invoiceMetadata;
+
+    @Setup
+    public void setUp() {
+        invoiceItemRows = InMemoryResultSet.invoiceItemRows(rowCount);
+        invoiceRows = InMemoryResultSet.invoiceRows(rowCount);
+        invoiceItemMetadata = getMetadata(InvoiceItem.class);
+        invoiceMetadata = getMetadata(Invoice.class);
+    }
+
+    @Benchmark
+    public List<InvoiceItem> mapInvoiceItems() throws SQLException {
+        return Repository.listEntities(InMemoryResultSet.of(InMemoryResultSet.invoiceItemLabels(), invoiceItemRows), invoiceItemMetadata);
+    }
+
+    @Benchmark
+    public List<Invoice> mapInvoices() throws SQLException {
+        return Repository.listEntities(InMemoryResultSet.of(InMemoryResultSet.invoiceLabels(), invoiceRows), invoiceMetadata);
+    }
+
+    @NotNull
+    private <K> EntityMetadata<K> getMetadata(@NotNull Class<K> clazz) {
+        switch (metadataKind) {
+            case "generated":
+                return EntityMetadataRegistry.get(clazz);
+            case "reflective":
+                return new ReflectiveEntityMetadata<>(clazz);
+            default:
+                throw new IllegalArgumentException("Unknown metadata kind " + metadataKind + "!");
+        }
+    }
+}
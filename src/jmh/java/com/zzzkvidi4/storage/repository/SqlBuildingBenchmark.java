@@ -0,0 +1,51 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of building of find, insert, update, delete and merge statements of repository.
+ * Statements are built by constructor, data source is never connected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlBuildingBenchmark {
+    @NotNull
+    private DataSource dataSource;
+
+    @Setup
+    public void setUp() {
+        dataSource = new DataSource("jdbc:postgresql://localhost/none", "postgres", "postgres");
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public InvoiceItemRepository buildInvoiceItemRepository() {
+        return new InvoiceItemRepository(dataSource);
+    }
+
+    @Benchmark
+    public OrganizationRepository buildOrganizationRepository() {
+        return new OrganizationRepository(dataSource);
+    }
+}
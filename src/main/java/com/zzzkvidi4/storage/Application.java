@@ -2,14 +2,34 @@ package com.zzzkvidi4.storage;
 
 
 import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public final class Application {
+    /**
+     * Option to convert invoice tables to partitioned ones (PostgreSQL 13 or later).
+     * Primary keys of partitioned tables include date, so upsert and merging COPY of invoices and invoice items
+     * match rows by id and date, and invoice items should be written with date of their invoice.
+     */
+    @NotNull
+    private static final String PARTITIONED_OPTION = "--partitioned";
+
     public static void main(@NotNull String[] args) {
-        if (args.length < 2) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean partitioned = arguments.remove(PARTITIONED_OPTION);
+        if (arguments.size() < 2) {
             throw new RuntimeException("Not enough arguments!");
         }
-        Flyway flyway = new Flyway(Flyway.configure().dataSource(args[0], args[1], args.length >= 3 ? args[2] : null));
+        FluentConfiguration configuration = Flyway.configure().dataSource(arguments.get(0), arguments.get(1), arguments.size() >= 3 ? arguments.get(2) : null);
+        if (partitioned) {
+            // partitioning may be enabled after later migrations are applied
+            configuration.locations("classpath:db/migration", "classpath:db/partitioning").outOfOrder(true);
+        }
+        Flyway flyway = new Flyway(configuration);
         flyway.migrate();
     }
 }
@@ -0,0 +1,107 @@
+package com.zzzkvidi4.storage;
+
+import com.zzzkvidi4.storage.generator.DataGenerator;
+import com.zzzkvidi4.storage.generator.GenerationResult;
+import com.zzzkvidi4.storage.generator.GeneratorSettings;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.repository.ItemRepository;
+import com.zzzkvidi4.storage.repository.OrganizationRepository;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point to fill migrated database with synthetic data.
+ * Arguments are url, user and optional password followed by options {@code --name=value} of {@link GeneratorSettings},
+ * e.g. {@code --seed=7 --invoices=1000000 --item-skew=1.2}.
+ */
+public final class GeneratorApplication {
+    @NotNull
+    private static final String OPTION_PREFIX = "--";
+
+    public static void main(@NotNull String[] args) {
+        List<String> arguments = new ArrayList<>();
+        GeneratorSettings.GeneratorSettingsBuilder settings = GeneratorSettings.builder();
+        for (String arg : args) {
+            if (arg.startsWith(OPTION_PREFIX)) {
+                setOption(settings, arg.substring(OPTION_PREFIX.length()));
+            } else {
+                arguments.add(arg);
+            }
+        }
+        if (arguments.size() < 2) {
+            throw new RuntimeException("Not enough arguments!");
+        }
+        try (DataSource dataSource = new DataSource(arguments.get(0), arguments.get(1), arguments.size() >= 3 ? arguments.get(2) : "")) {
+            DataGenerator generator = new DataGenerator(
+                    new OrganizationRepository(dataSource),
+                    new ItemRepository(dataSource),
+                    new InvoiceRepository(dataSource),
+                    new InvoiceItemRepository(dataSource)
+            );
+            GenerationResult result = generator.generate(settings.build());
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * Method to set up option of generator.
+     *
+     * @param settings - builder of settings
+     * @param option   - option without prefix, e.g. {@code seed=7}
+     */
+    private static void setOption(@NotNull GeneratorSettings.GeneratorSettingsBuilder settings, @NotNull String option) {
+        int delimiter = option.indexOf('=');
+        if (delimiter < 0) {
+            throw new RuntimeException("No value of option " + option + "!");
+        }
+        String value = option.substring(delimiter + 1);
+        switch (option.substring(0, delimiter)) {
+            case "seed":
+                settings.seed(Long.parseLong(value));
+                break;
+            case "id-prefix":
+                settings.idPrefix(value);
+                break;
+            case "organizations":
+                settings.organizationCount(Integer.parseInt(value));
+                break;
+            case "items":
+                settings.itemCount(Integer.parseInt(value));
+                break;
+            case "invoices":
+                settings.invoiceCount(Integer.parseInt(value));
+                break;
+            case "items-per-invoice":
+                settings.itemsPerInvoice(Integer.parseInt(value));
+                break;
+            case "hot-organization-share":
+                settings.hotOrganizationShare(Double.parseDouble(value));
+                break;
+            case "hot-invoice-share":
+                settings.hotInvoiceShare(Double.parseDouble(value));
+                break;
+            case "item-skew":
+                settings.itemSkew(Double.parseDouble(value));
+                break;
+            case "first-day":
+                settings.firstDay(LocalDate.parse(value));
+                break;
+            case "days":
+                settings.dayCount(Integer.parseInt(value));
+                break;
+            case "seasonality":
+                settings.seasonality(Double.parseDouble(value));
+                break;
+            case "peak-day-of-year":
+                settings.peakDayOfYear(Integer.parseInt(value));
+                break;
+            default:
+                throw new RuntimeException("Unknown option " + option + "!");
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.zzzkvidi4.storage.generator;
+
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
+import com.zzzkvidi4.storage.model.Item;
+import com.zzzkvidi4.storage.model.Organization;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.repository.ItemRepository;
+import com.zzzkvidi4.storage.repository.OrganizationRepository;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Generator of synthetic organizations, items, invoices and invoice items for scale testing.
+ * Rows are generated while they are loaded with COPY, so no table is kept in memory.
+ * Invoices are issued mostly by hot organizations, items follow Zipf distribution and dates follow yearly season.
+ */
+@RequiredArgsConstructor
+public final class DataGenerator {
+    /**
+     * Mixed into seed of invoice items, so they do not repeat random values of invoices.
+     */
+    private static final long INVOICE_ITEM_SEED_MIX = 0x9E3779B97F4A7C15L;
+    private static final double DAYS_IN_YEAR = 365.25;
+    private static final int SECONDS_IN_DAY = 24 * 60 * 60;
+    /**
+     * Attempts to sample distinct item per item of invoice, invoice gets fewer items when they are exhausted.
+     */
+    private static final int ITEM_ATTEMPTS = 20;
+    private static final int MIN_PRICE = 10;
+    private static final int PRICE_RANGE = 990;
+
+    @NotNull
+    private final OrganizationRepository organizationRepository;
+    @NotNull
+    private final ItemRepository itemRepository;
+    @NotNull
+    private final InvoiceRepository invoiceRepository;
+    @NotNull
+    private final InvoiceItemRepository invoiceItemRepository;
+
+    /**
+     * Method to generate data and load it into tables.
+     *
+     * @param settings - settings of generator
+     * @return         - counts of loaded rows
+     */
+    @NotNull
+    public GenerationResult generate(@NotNull GeneratorSettings settings) {
+        validate(settings);
+        String prefix = settings.getIdPrefix();
+        long organizationCount = organizationRepository.copyIn(() -> IntStream.range(0, settings.getOrganizationCount())
+                .mapToObj(i -> new Organization(prefix + i, prefix + "Organization " + i, String.format("%011d", i), String.format("%020d", i)))
+                .iterator());
+        long itemCount = itemRepository.copyIn(() -> IntStream.range(0, settings.getItemCount())
+                .mapToObj(i -> new Item(prefix + i, prefix + "Item " + i, prefix + "code " + i))
+                .iterator());
+        long invoiceCount = invoiceRepository.copyIn(() -> invoices(settings).iterator());
+        long invoiceItemCount = invoiceItemRepository.copyIn(() -> invoiceItems(settings).iterator());
+        return new GenerationResult(organizationCount, itemCount, invoiceCount, invoiceItemCount);
+    }
+
+    /**
+     * Method to create stream of invoices, a new stream repeats the same invoices.
+     *
+     * @param settings - settings of generator
+     * @return         - invoices
+     */
+    @NotNull
+    private static Stream<Invoice> invoices(@NotNull GeneratorSettings settings) {
+        Random random = new Random(settings.getSeed());
+        DiscreteDistribution days = DiscreteDistribution.of(settings.getDayCount(), day -> {
+            int dayOfYear = settings.getFirstDay().plusDays(day).getDayOfYear();
+            return 1 + settings.getSeasonality() * Math.cos(2 * Math.PI * (dayOfYear - settings.getPeakDayOfYear()) / DAYS_IN_YEAR);
+        });
+        int organizationCount = settings.getOrganizationCount();
+        int hotCount = (int) Math.round(organizationCount * settings.getHotOrganizationShare());
+        ZoneId zone = ZoneId.systemDefault();
+        return IntStream.range(0, settings.getInvoiceCount()).mapToObj(i -> {
+            LocalDate day = settings.getFirstDay().plusDays(days.sample(random));
+            int organization;
+            if (hotCount == 0 || hotCount == organizationCount) {
+                organization = random.nextInt(organizationCount);
+            } else if (random.nextDouble() < settings.getHotInvoiceShare()) {
+                organization = random.nextInt(hotCount);
+            } else {
+                organization = hotCount + random.nextInt(organizationCount - hotCount);
+            }
+            return new Invoice(
+                    settings.getIdPrefix() + i,
+                    day.atStartOfDay(zone).plusSeconds(random.nextInt(SECONDS_IN_DAY)).toInstant(),
+                    settings.getIdPrefix() + organization
+            );
+        });
+    }
+
+    /**
+     * Method to create stream of invoice items of all invoices, a new stream repeats the same invoice items.
+     *
+     * @param settings - settings of generator
+     * @return         - invoice items
+     */
+    @NotNull
+    private static Stream<InvoiceItem> invoiceItems(@NotNull GeneratorSettings settings) {
+        Random random = new Random(settings.getSeed() ^ INVOICE_ITEM_SEED_MIX);
+        DiscreteDistribution items = DiscreteDistribution.zipf(settings.getItemCount(), settings.getItemSkew());
+        String prefix = settings.getIdPrefix();
+        long[] nextId = {0};
+        // items carry date of their invoice, partitioned invoice_item is routed by it
+        return invoices(settings).flatMap(invoice -> {
+            int count = Math.min(1 + random.nextInt(2 * settings.getItemsPerInvoice()), settings.getItemCount());
+            Set<Integer> itemIndexes = new LinkedHashSet<>();
+            for (int attempt = 0; attempt < count * ITEM_ATTEMPTS && itemIndexes.size() < count; ++attempt) {
+                itemIndexes.add(items.sample(random));
+            }
+            List<InvoiceItem> invoiceItems = new ArrayList<>(itemIndexes.size());
+            for (int item : itemIndexes) {
+                // price of item varies around its own base price
+                int basePrice = MIN_PRICE + (int) ((item * 7919L) % PRICE_RANGE);
+                int price = basePrice + random.nextInt(basePrice / 5 + 1) - basePrice / 10;
+                double volume = 1 + random.nextInt(100_000) / 1000.0;
+                invoiceItems.add(new InvoiceItem(prefix + nextId[0]++, invoice.getId(), prefix + item, price, volume, invoice.getDate()));
+            }
+            return invoiceItems.stream();
+        });
+    }
+
+    private static void validate(@NotNull GeneratorSettings settings) {
+        if (settings.getOrganizationCount() <= 0 || settings.getItemCount() <= 0 || settings.getInvoiceCount() < 0) {
+            throw new IllegalArgumentException("Counts of organizations and items should be positive, count of invoices should not be negative!");
+        }
+        if (settings.getItemsPerInvoice() <= 0 || settings.getDayCount() <= 0) {
+            throw new IllegalArgumentException("Items per invoice and count of days should be positive!");
+        }
+        if (!isShare(settings.getHotOrganizationShare()) || !isShare(settings.getHotInvoiceShare()) || !isShare(settings.getSeasonality())) {
+            throw new IllegalArgumentException("Shares and seasonality should be from 0 to 1!");
+        }
+        if (settings.getItemSkew() < 0) {
+            throw new IllegalArgumentException("Item skew should not be negative!");
+        }
+    }
+
+    private static boolean isShare(double value) {
+        return value >= 0 && value <= 1;
+    }
+}
@@ -0,0 +1,66 @@
+package com.zzzkvidi4.storage.generator;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Distribution of indexes from 0 to size with given weights, index is sampled by binary search of cumulative weights.
+ */
+final class DiscreteDistribution {
+    @NotNull
+    private final double[] cumulativeWeights;
+
+    private DiscreteDistribution(@NotNull double[] cumulativeWeights) {
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    /**
+     * Method to create distribution.
+     *
+     * @param size   - count of indexes
+     * @param weight - non-negative weight of index, some weight should be positive
+     * @return       - distribution
+     */
+    @NotNull
+    static DiscreteDistribution of(int size, @NotNull IntToDoubleFunction weight) {
+        double[] cumulativeWeights = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; ++i) {
+            sum += weight.applyAsDouble(i);
+            cumulativeWeights[i] = sum;
+        }
+        if (!(sum > 0)) {
+            throw new IllegalArgumentException("Sum of weights should be positive!");
+        }
+        return new DiscreteDistribution(cumulativeWeights);
+    }
+
+    /**
+     * Method to create Zipf distribution, weight of index is {@code 1 / (index + 1) ^ exponent}.
+     *
+     * @param size     - count of indexes
+     * @param exponent - exponent, 0 gives uniform distribution
+     * @return         - distribution
+     */
+    @NotNull
+    static DiscreteDistribution zipf(int size, double exponent) {
+        return of(size, i -> 1 / Math.pow(i + 1, exponent));
+    }
+
+    /**
+     * Method to sample index.
+     *
+     * @param random - random source
+     * @return       - index
+     */
+    int sample(@NotNull Random random) {
+        double value = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int index = Arrays.binarySearch(cumulativeWeights, value);
+        // index of first weight greater than value, indexes of zero weight are never found
+        index = index < 0 ? -index - 1 : index + 1;
+        return Math.min(index, cumulativeWeights.length - 1);
+    }
+}
@@ -0,0 +1,18 @@
+package com.zzzkvidi4.storage.generator;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Counts of rows loaded by {@link DataGenerator}.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class GenerationResult {
+    private final long organizationCount;
+    private final long itemCount;
+    private final long invoiceCount;
+    private final long invoiceItemCount;
+}
@@ -0,0 +1,73 @@
+package com.zzzkvidi4.storage.generator;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+
+/**
+ * Settings of {@link DataGenerator}, data generated with the same settings is the same.
+ */
+@Getter
+@Builder
+@ToString
+public final class GeneratorSettings {
+    @NotNull
+    public static final GeneratorSettings DEFAULT = builder().build();
+
+    /**
+     * Seed of random sources.
+     */
+    @Builder.Default
+    private final long seed = 42;
+    /**
+     * Prefix of ids, names and codes, so generated rows do not clash with existing ones.
+     * Tax numbers are derived from index only, so organizations of two runs should not share database.
+     */
+    @NotNull
+    @Builder.Default
+    private final String idPrefix = "";
+    @Builder.Default
+    private final int organizationCount = 1000;
+    @Builder.Default
+    private final int itemCount = 10_000;
+    @Builder.Default
+    private final int invoiceCount = 100_000;
+    /**
+     * Mean count of items of invoice, count is uniform from 1 to twice the mean.
+     */
+    @Builder.Default
+    private final int itemsPerInvoice = 10;
+    /**
+     * Share of organizations which are hot, from 0 to 1.
+     */
+    @Builder.Default
+    private final double hotOrganizationShare = 0.1;
+    /**
+     * Share of invoices issued by hot organizations, from 0 to 1.
+     */
+    @Builder.Default
+    private final double hotInvoiceShare = 0.8;
+    /**
+     * Exponent of Zipf distribution of items in invoices, item with lower index is more popular, 0 gives uniform distribution.
+     */
+    @Builder.Default
+    private final double itemSkew = 1.0;
+    @NotNull
+    @Builder.Default
+    private final LocalDate firstDay = LocalDate.of(2019, 1, 1);
+    @Builder.Default
+    private final int dayCount = 365;
+    /**
+     * Amplitude of yearly wave of count of invoices per day, from 0 (no season) to 1 (no invoices at opposite of peak).
+     */
+    @Builder.Default
+    private final double seasonality = 0.5;
+    /**
+     * Day of year with the most invoices.
+     */
+    @Builder.Default
+    private final int peakDayOfYear = 350;
+}
@@ -0,0 +1,97 @@
+package com.zzzkvidi4.storage.metrics;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recorder which keeps histogram of every metric of every operation in memory.
+ */
+public final class HistogramMetricsRecorder implements MetricsRecorder {
+    /**
+     * Histograms by source and operation, indexed by metric ordinal. Keys are looked up without allocation.
+     */
+    @NotNull
+    private final Map<String, Map<String, Histogram[]>> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void record(@NotNull String source, @NotNull String operation, @NotNull Metric metric, long value) {
+        Map<String, Histogram[]> operations = histograms.get(source);
+        if (operations == null) {
+            operations = histograms.computeIfAbsent(source, s -> new ConcurrentHashMap<>());
+        }
+        Histogram[] metrics = operations.get(operation);
+        if (metrics == null) {
+            metrics = operations.computeIfAbsent(operation, o -> createHistograms());
+        }
+        metrics[metric.ordinal()].record(value);
+    }
+
+    /**
+     * Method to get histogram of metric.
+     *
+     * @param source    - table name of repository or service name
+     * @param operation - operation name
+     * @param metric    - metric
+     * @return          - histogram or {@literal null} if operation was not recorded
+     */
+    @Nullable
+    public Histogram getHistogram(@NotNull String source, @NotNull String operation, @NotNull Metric metric) {
+        Map<String, Histogram[]> operations = histograms.get(source);
+        Histogram[] metrics = operations == null ? null : operations.get(operation);
+        return metrics == null ? null : metrics[metric.ordinal()];
+    }
+
+    /**
+     * Method to get histograms of all recorded operations.
+     *
+     * @return - histograms by key
+     */
+    @NotNull
+    public Map<Key, Histogram> getHistograms() {
+        Map<Key, Histogram> result = new HashMap<>();
+        histograms.forEach((source, operations) -> operations.forEach((operation, metrics) -> {
+            for (Metric metric : Metric.values()) {
+                result.put(new Key(source, operation, metric), metrics[metric.ordinal()]);
+            }
+        }));
+        return result;
+    }
+
+    @NotNull
+    private static Histogram[] createHistograms() {
+        Histogram[] metrics = new Histogram[Metric.values().length];
+        for (int i = 0; i < metrics.length; ++i) {
+            metrics[i] = new Histogram();
+        }
+        return metrics;
+    }
+
+    /**
+     * Tags of histogram.
+     */
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    public static final class Key {
+        @NotNull
+        private final String source;
+        @NotNull
+        private final String operation;
+        @NotNull
+        private final Metric metric;
+    }
+}
@@ -0,0 +1,31 @@
+package com.zzzkvidi4.storage.metrics;
+
+/**
+ * Values recorded for every operation.
+ */
+public enum Metric {
+    /**
+     * Time to get connection from pool, in nanoseconds.
+     */
+    ACQUIRE_TIME,
+    /**
+     * Time to execute statement, in nanoseconds.
+     */
+    EXECUTE_TIME,
+    /**
+     * Time to map rows to entities, in nanoseconds.
+     */
+    MAPPING_TIME,
+    /**
+     * Time of whole operation, in nanoseconds.
+     */
+    TOTAL_TIME,
+    /**
+     * Count of rows returned or affected.
+     */
+    ROWS,
+    /**
+     * Time of failed operation, in nanoseconds. Count of values is count of failures.
+     */
+    FAILED_TIME
+}
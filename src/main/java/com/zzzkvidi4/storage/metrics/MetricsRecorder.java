@@ -0,0 +1,41 @@
+package com.zzzkvidi4.storage.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receiver of metrics of repository and service operations.
+ * Implementations are called concurrently by threads which run operations, so recording should be cheap.
+ */
+public interface MetricsRecorder {
+    /**
+     * Recorder which records nothing, operations are not timed at all with it.
+     */
+    @NotNull
+    MetricsRecorder DISABLED = new MetricsRecorder() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void record(@NotNull String source, @NotNull String operation, @NotNull Metric metric, long value) {
+        }
+    };
+
+    /**
+     * Method to check whether operations should be timed.
+     *
+     * @return - {@literal false} if values are dropped
+     */
+    boolean isEnabled();
+
+    /**
+     * Method to record value of operation.
+     *
+     * @param source    - table name of repository or service name
+     * @param operation - operation name
+     * @param metric    - recorded metric
+     * @param value     - value
+     */
+    void record(@NotNull String source, @NotNull String operation, @NotNull Metric metric, long value);
+}
@@ -0,0 +1,109 @@
+package com.zzzkvidi4.storage.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToLongFunction;
+
+/**
+ * Timer of phases of one operation, every phase lasts from end of previous one.
+ * Timer of disabled recorder is shared and does nothing.
+ */
+public final class OperationTimer {
+    @NotNull
+    private static final OperationTimer DISABLED = new OperationTimer(null, "", "");
+
+    @Nullable
+    private final MetricsRecorder recorder;
+    @NotNull
+    private final String source;
+    @NotNull
+    private final String operation;
+    private final long startNanos;
+    private long phaseStartNanos;
+    private boolean finished;
+
+    private OperationTimer(@Nullable MetricsRecorder recorder, @NotNull String source, @NotNull String operation) {
+        this.recorder = recorder;
+        this.source = source;
+        this.operation = operation;
+        startNanos = recorder == null ? 0 : System.nanoTime();
+        phaseStartNanos = startNanos;
+    }
+
+    /**
+     * Method to start timing of operation.
+     *
+     * @param recorder  - recorder of metrics
+     * @param source    - table name of repository or service name
+     * @param operation - operation name
+     * @return          - timer
+     */
+    @NotNull
+    public static OperationTimer start(@NotNull MetricsRecorder recorder, @NotNull String source, @NotNull String operation) {
+        return recorder.isEnabled() ? new OperationTimer(recorder, source, operation) : DISABLED;
+    }
+
+    /**
+     * Method to end phase of operation.
+     *
+     * @param metric - metric of phase
+     */
+    public void phase(@NotNull Metric metric) {
+        if (recorder == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        recorder.record(source, operation, metric, now - phaseStartNanos);
+        phaseStartNanos = now;
+    }
+
+    /**
+     * Method to end operation, failed operations are not finished and are recorded by {@link #abort()}.
+     *
+     * @param rows - count of rows returned or affected
+     */
+    public void finish(long rows) {
+        if (recorder == null) {
+            return;
+        }
+        finished = true;
+        recorder.record(source, operation, Metric.TOTAL_TIME, System.nanoTime() - startNanos);
+        recorder.record(source, operation, Metric.ROWS, rows);
+    }
+
+    /**
+     * Method to end operation which was not finished because it failed, it should be called in {@code finally} block.
+     * Does nothing if operation is already finished.
+     */
+    public void abort() {
+        if (recorder == null || finished) {
+            return;
+        }
+        finished = true;
+        recorder.record(source, operation, Metric.FAILED_TIME, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Method to end asynchronous operation when its result is ready or to abort it when it fails.
+     *
+     * @param future - future of result
+     * @param rows   - function to count rows of result
+     * @param <R>    - type of result
+     * @return       - future completed after operation is recorded
+     */
+    @NotNull
+    public <R> CompletableFuture<R> finishOnSuccess(@NotNull CompletableFuture<R> future, @NotNull ToLongFunction<? super R> rows) {
+        if (recorder == null) {
+            return future;
+        }
+        return future.whenComplete((result, e) -> {
+            if (e == null) {
+                finish(rows.applyAsLong(result));
+            } else {
+                abort();
+            }
+        });
+    }
+}
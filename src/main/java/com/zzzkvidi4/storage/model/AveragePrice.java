@@ -0,0 +1,15 @@
+package com.zzzkvidi4.storage.model;
+
+import com.zzzkvidi4.storage.annotation.Column;
+import lombok.Data;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Projection of average price of invoice items.
+ */
+@Data
+public final class AveragePrice {
+    @Nullable
+    @Column("average_price")
+    private Double averagePrice;
+}
@@ -0,0 +1,21 @@
+package com.zzzkvidi4.storage.model;
+
+import com.zzzkvidi4.storage.annotation.Column;
+import lombok.Data;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+
+/**
+ * Projection of invoice items summarized by day of invoice.
+ */
+@Data
+public final class DaySummary {
+    @Nullable
+    @Column("day")
+    private LocalDate day;
+    @Column("price")
+    private long price;
+    @Column("volume")
+    private double volume;
+}
@@ -0,0 +1,15 @@
+package com.zzzkvidi4.storage.model;
+
+import com.zzzkvidi4.storage.annotation.Column;
+import lombok.Data;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Projection of partition detached by maintenance.
+ */
+@Data
+public final class DetachedPartition {
+    @Nullable
+    @Column("detached_partition")
+    private String name;
+}
@@ -8,6 +8,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.jetbrains.annotations.Nullable;
 
+import java.time.Instant;
+
 /**
  * Invoice item entity class.
  */
@@ -30,4 +32,15 @@ public final class InvoiceItem {
     private int price;
     @Column("volume")
     private double volume;
+    /**
+     * Date of invoice, on insert and change of invoice it is taken from invoice by trigger.
+     * Partitioned invoice_item is routed by it, so there it should be written with date of invoice.
+     */
+    @Nullable
+    @Column("invoice_date")
+    private Instant invoiceDate;
+
+    public InvoiceItem(@Nullable String id, @Nullable String invoiceId, @Nullable String itemId, int price, double volume) {
+        this(id, invoiceId, itemId, price, volume, null);
+    }
 }
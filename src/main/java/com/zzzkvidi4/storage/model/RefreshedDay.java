@@ -0,0 +1,17 @@
+package com.zzzkvidi4.storage.model;
+
+import com.zzzkvidi4.storage.annotation.Column;
+import lombok.Data;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+
+/**
+ * Projection of day recalculated by refresh of rollup.
+ */
+@Data
+public final class RefreshedDay {
+    @Nullable
+    @Column("refreshed_day")
+    private LocalDate day;
+}
@@ -0,0 +1,87 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory of executors running asynchronous requests.
+ */
+final class AsyncExecutors {
+    @NotNull
+    private static final String THREAD_NAME_PREFIX = "storage-async-";
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private AsyncExecutors() {
+    }
+
+    /**
+     * Method to create executor by settings.
+     *
+     * @param settings - settings of data source
+     * @return         - executor which should be shut down by owner
+     */
+    @NotNull
+    static ExecutorService create(@NotNull DataSourceSettings settings) {
+        if (settings.isVirtualThreads()) {
+            ExecutorService executor = createVirtual();
+            if (executor != null) {
+                return executor;
+            }
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                settings.getAsyncPoolSize(),
+                settings.getAsyncPoolSize(),
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(settings.getAsyncQueueCapacity()),
+                new DaemonThreadFactory()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Method to create executor starting virtual thread per request, it is looked up reflectively to keep Java 8 target.
+     *
+     * @return - executor or {@literal null} if JDK has no virtual threads
+     */
+    @Nullable
+    private static ExecutorService createVirtual() {
+        Method factory;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Factory of named daemon threads, so unfinished requests do not prevent JVM shutdown.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        @NotNull
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @NotNull
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Settings of entity cache of repository.
+ */
+@Getter
+@Builder
+public final class CacheSettings {
+    @NotNull
+    public static final CacheSettings DEFAULT = builder().build();
+
+    /**
+     * Maximum count of cached entities, least recently used entity is evicted when it is exceeded.
+     */
+    @Builder.Default
+    private final int maximumSize = 1000;
+    /**
+     * Time after which cached entity is loaded from database again, non-positive value disables expiration.
+     */
+    @Builder.Default
+    private final long timeToLiveMillis = 10 * 60 * 1000L;
+}
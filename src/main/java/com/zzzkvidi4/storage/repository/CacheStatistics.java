@@ -0,0 +1,40 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Snapshot of entity cache counters.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class CacheStatistics {
+    /**
+     * Lookups answered by cache.
+     */
+    private final long hits;
+    /**
+     * Lookups which went to database.
+     */
+    private final long misses;
+    /**
+     * Entries removed because cache was full or they expired.
+     */
+    private final long evictions;
+    /**
+     * Count of cached entities.
+     */
+    private final int size;
+
+    /**
+     * Method to get share of lookups answered by cache.
+     *
+     * @return - hit ratio from 0 to 1
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,226 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Supported java types of columns and statement arguments.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ColumnType {
+    STRING("varchar", Types.VARCHAR) {
+        @Nullable
+        @Override
+        public Object read(@NotNull ResultSet resultSet, int index) throws SQLException {
+            return resultSet.getString(index);
+        }
+
+        @Override
+        void writeValue(@NotNull PreparedStatement statement, int index, @NotNull Object value) throws SQLException {
+            statement.setString(index, (String) value);
+        }
+
+        @NotNull
+        @Override
+        public Object parse(@NotNull String text) {
+            return text;
+        }
+    },
+    INSTANT("timestamp", Types.TIMESTAMP) {
+        @Nullable
+        @Override
+        public Object read(@NotNull ResultSet resultSet, int index) throws SQLException {
+            Timestamp timestamp = resultSet.getTimestamp(index);
+            return timestamp == null ? null : timestamp.toInstant();
+        }
+
+        @Override
+        void writeValue(@NotNull PreparedStatement statement, int index, @NotNull Object value) throws SQLException {
+            statement.setTimestamp(index, Timestamp.from((Instant) value));
+        }
+
+        @NotNull
+        @Override
+        public String format(@NotNull Object value) {
+            // the same local time which is sent by setTimestamp
+            return Timestamp.from((Instant) value).toString();
+        }
+
+        @NotNull
+        @Override
+        public Object parse(@NotNull String text) {
+            return Timestamp.valueOf(text).toInstant();
+        }
+    },
+    LOCAL_DATE("date", Types.DATE) {
+        @Nullable
+        @Override
+        public Object read(@NotNull ResultSet resultSet, int index) throws SQLException {
+            Date date = resultSet.getDate(index);
+            return date == null ? null : date.toLocalDate();
+        }
+
+        @Override
+        void writeValue(@NotNull PreparedStatement statement, int index, @NotNull Object value) throws SQLException {
+            statement.setDate(index, Date.valueOf((LocalDate) value));
+        }
+
+        @NotNull
+        @Override
+        public Object parse(@NotNull String text) {
+            return LocalDate.parse(text);
+        }
+    },
+    INT("int4", Types.INTEGER) {
+        @Nullable
+        @Override
+        public Object read(@NotNull ResultSet resultSet, int index) throws SQLException {
+            int value = resultSet.getInt(index);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        void writeValue(@NotNull PreparedStatement statement, int index, @NotNull Object value) throws SQLException {
+            statement.setInt(index, (Integer) value);
+        }
+
+        @NotNull
+        @Override
+        public Object parse(@NotNull String text) {
+            return Integer.valueOf(text);
+        }
+    },
+    LONG("int8", Types.BIGINT) {
+        @Nullable
+        @Override
+        public Object read(@NotNull ResultSet resultSet, int index) throws SQLException {
+            long value = resultSet.getLong(index);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        void writeValue(@NotNull PreparedStatement statement, int index, @NotNull Object value) throws SQLException {
+            statement.setLong(index, (Long) value);
+        }
+
+        @NotNull
+        @Override
+        public Object parse(@NotNull String text) {
+            return Long.valueOf(text);
+        }
+    },
+    DOUBLE("float8", Types.DOUBLE) {
+        @Nullable
+        @Override
+        public Object read(@NotNull ResultSet resultSet, int index) throws SQLException {
+            double value = resultSet.getDouble(index);
+            return resultSet.wasNull() ? null : value;
+        }
+
+        @Override
+        void writeValue(@NotNull PreparedStatement statement, int index, @NotNull Object value) throws SQLException {
+            statement.setDouble(index, (Double) value);
+        }
+
+        @NotNull
+        @Override
+        public Object parse(@NotNull String text) {
+            return Double.valueOf(text);
+        }
+    };
+
+    /**
+     * Name of type in database.
+     */
+    @NotNull
+    private final String sqlName;
+    /**
+     * Type from {@link Types}.
+     */
+    private final int sqlType;
+
+    /**
+     * Method to read value from result set.
+     *
+     * @param resultSet - result set
+     * @param index     - column index
+     * @return          - value or {@literal null} if column is null
+     * @throws SQLException - if value could not be read
+     */
+    @Nullable
+    public abstract Object read(@NotNull ResultSet resultSet, int index) throws SQLException;
+
+    /**
+     * Method to set up statement argument.
+     *
+     * @param statement - statement
+     * @param index     - argument index
+     * @param value     - argument value
+     * @throws SQLException - if argument could not be set
+     */
+    public void write(@NotNull PreparedStatement statement, int index, @Nullable Object value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, sqlType);
+        } else {
+            writeValue(statement, index, value);
+        }
+    }
+
+    abstract void writeValue(@NotNull PreparedStatement statement, int index, @NotNull Object value) throws SQLException;
+
+    /**
+     * Method to convert value to text accepted by database as literal of this type.
+     *
+     * @param value - value
+     * @return      - text representation
+     */
+    @NotNull
+    public String format(@NotNull Object value) {
+        return value.toString();
+    }
+
+    /**
+     * Method to convert text made by {@link #format(Object)} back to value.
+     *
+     * @param text - text representation
+     * @return     - value
+     */
+    @NotNull
+    public abstract Object parse(@NotNull String text);
+
+    /**
+     * Method to find type by java class.
+     *
+     * @param clazz - java class (primitive or boxed)
+     * @return      - type or {@literal null} if class is not supported
+     */
+    @Nullable
+    public static ColumnType of(@NotNull Class<?> clazz) {
+        if (clazz == String.class) {
+            return STRING;
+        } else if (clazz == Instant.class) {
+            return INSTANT;
+        } else if (clazz == LocalDate.class) {
+            return LOCAL_DATE;
+        } else if (clazz == int.class || clazz == Integer.class) {
+            return INT;
+        } else if (clazz == long.class || clazz == Long.class) {
+            return LONG;
+        } else if (clazz == double.class || clazz == Double.class) {
+            return DOUBLE;
+        }
+        return null;
+    }
+}
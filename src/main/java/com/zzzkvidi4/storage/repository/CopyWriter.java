@@ -0,0 +1,130 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Writer of entities into {@code COPY ... FROM STDIN} in text format.
+ * Rows are encoded one by one into buffer of fixed size which is sent to database when it is full.
+ */
+final class CopyWriter {
+    private static final char DELIMITER = '\t';
+    private static final char ROW_END = '\n';
+    @NotNull
+    private static final String NULL = "\\N";
+
+    private CopyWriter() {
+    }
+
+    /**
+     * Method to copy entities into table.
+     *
+     * @param connection - connection to PostgreSQL
+     * @param table      - table name
+     * @param columns    - columns in order of COPY column list
+     * @param entities   - entities to copy
+     * @param bufferSize - size of buffer in bytes
+     * @param <T>        - type of entity
+     * @return           - count of copied rows
+     * @throws SQLException - if copy failed, it is cancelled in this case
+     */
+    static <T> long copy(@NotNull Connection connection, @NotNull String table, @NotNull List<EntityColumn<T>> columns, @NotNull Iterable<? extends T> entities, int bufferSize) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql(table, columns));
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new PGCopyOutputStream(copyIn, bufferSize), StandardCharsets.UTF_8), bufferSize);
+            StringBuilder row = new StringBuilder();
+            for (T entity : entities) {
+                row.setLength(0);
+                appendRow(row, columns, entity);
+                writer.append(row);
+            }
+            writer.flush();
+            return copyIn.endCopy();
+        } catch (IOException e) {
+            throw new SQLException(e.getMessage(), e);
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Method to build COPY statement.
+     *
+     * @param table   - table name
+     * @param columns - columns in order of COPY column list
+     * @return        - statement
+     */
+    @NotNull
+    static String copySql(@NotNull String table, @NotNull List<? extends EntityColumn<?>> columns) {
+        StringBuilder sql = new StringBuilder("COPY ").append(table).append(" (");
+        for (int i = 0; i < columns.size(); ++i) {
+            sql.append(i == 0 ? "" : ", ").append(columns.get(i).getName());
+        }
+        return sql.append(") FROM STDIN").toString();
+    }
+
+    /**
+     * Method to encode entity as row of text format.
+     *
+     * @param row     - builder of row
+     * @param columns - columns
+     * @param entity  - entity
+     * @param <T>     - type of entity
+     */
+    private static <T> void appendRow(@NotNull StringBuilder row, @NotNull List<EntityColumn<T>> columns, @NotNull T entity) {
+        for (int i = 0; i < columns.size(); ++i) {
+            if (i != 0) {
+                row.append(DELIMITER);
+            }
+            EntityColumn<T> column = columns.get(i);
+            Object value = column.getValue(entity);
+            if (value == null) {
+                row.append(NULL);
+            } else {
+                appendEscaped(row, column.getType().format(value));
+            }
+        }
+        row.append(ROW_END);
+    }
+
+    /**
+     * Method to escape characters which have special meaning in text format.
+     *
+     * @param row  - builder of row
+     * @param text - value text
+     */
+    private static void appendEscaped(@NotNull StringBuilder row, @NotNull String text) {
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    row.append("\\\\");
+                    break;
+                case '\t':
+                    row.append("\\t");
+                    break;
+                case '\n':
+                    row.append("\\n");
+                    break;
+                case '\r':
+                    row.append("\\r");
+                    break;
+                default:
+                    row.append(c);
+            }
+        }
+    }
+}
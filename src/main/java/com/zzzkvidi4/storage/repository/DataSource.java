@@ -1,19 +1,603 @@
 package com.zzzkvidi4.storage.repository;
 
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
- * Class to store connection information.
+ * Pool of connections to database.
  */
-@Getter
-@RequiredArgsConstructor
-public final class DataSource {
+public final class DataSource implements AutoCloseable {
+    @Getter
     @NotNull
     private final String url;
+    @Getter
     @NotNull
     private final String name;
+    @Getter
     @NotNull
     private final String password;
+    @Getter
+    @NotNull
+    private final DataSourceSettings settings;
+    @NotNull
+    private final ReentrantLock lock = new ReentrantLock();
+    @NotNull
+    private final Condition released = lock.newCondition();
+    /**
+     * Idle connections, most recently used first.
+     */
+    @NotNull
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private int total = 0;
+    private int active = 0;
+    private int waiters = 0;
+    private boolean closed = false;
+    private long acquireCount = 0;
+    private long acquireNanos = 0;
+    private long maxAcquireNanos = 0;
+    /**
+     * Executor of asynchronous requests created on first use, {@literal null} if executor was passed in settings.
+     */
+    @Nullable
+    private ExecutorService ownExecutor;
+    /**
+     * Daemon thread closing idle connections, it is started when first connection becomes idle.
+     */
+    @Nullable
+    private ScheduledExecutorService idleReaper;
+    /**
+     * Transaction of current thread started by this data source.
+     */
+    @NotNull
+    private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+    /**
+     * Log of slow queries, {@literal null} if it is disabled.
+     */
+    @Nullable
+    private final SlowQueryLog slowQueryLog;
+
+    public DataSource(@NotNull String url, @NotNull String name, @NotNull String password) {
+        this(url, name, password, DataSourceSettings.DEFAULT);
+    }
+
+    public DataSource(@NotNull String url, @NotNull String name, @NotNull String password, @NotNull DataSourceSettings settings) {
+        if (settings.getMaximumPoolSize() <= 0) {
+            throw new IllegalArgumentException("Pool size should be positive!");
+        }
+        if (settings.getBatchSize() <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive!");
+        }
+        if (settings.getCopyBufferSize() <= 0) {
+            throw new IllegalArgumentException("Copy buffer size should be positive!");
+        }
+        if (settings.getAsyncPoolSize() <= 0 || settings.getAsyncQueueCapacity() <= 0) {
+            throw new IllegalArgumentException("Async pool size and queue capacity should be positive!");
+        }
+        this.url = url;
+        this.name = name;
+        this.password = password;
+        this.settings = settings;
+        SlowQuerySettings slowQuerySettings = settings.getSlowQuerySettings();
+        slowQueryLog = slowQuerySettings == null ? null : new SlowQueryLog(slowQuerySettings);
+    }
+
+    /**
+     * Method to borrow connection from pool, connection is returned to pool on close.
+     * Inside transaction scope connection of transaction is returned, its closing does not end transaction.
+     *
+     * @return - connection
+     * @throws SQLException - if connection was not acquired in time or could not be opened
+     */
+    @NotNull
+    public Connection getConnection() throws SQLException {
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            return transaction.getConnection();
+        }
+        return acquire().borrow();
+    }
+
+    /**
+     * Method to run callback in transaction with default options.
+     *
+     * @param callback - callback
+     * @param <R>      - type of result
+     * @return         - result of callback
+     * @see #inTransaction(TransactionOptions, Function)
+     */
+    public <R> R inTransaction(@NotNull Function<Transaction, R> callback) {
+        return inTransaction(TransactionOptions.DEFAULT, callback);
+    }
+
+    /**
+     * Method to run callback in transaction, all requests made by current thread inside callback share one connection.
+     * Transaction is committed when callback returns and rolled back when it throws exception or was marked as rollback-only.
+     * Scope started inside another scope joins outer transaction and ignores options. If joined scope throws exception,
+     * transaction is rolled back even if outer callback catches it, {@link UnexpectedRollbackException} is thrown then.
+     * Requests made on other threads (e.g. asynchronous ones) do not participate in transaction.
+     *
+     * @param options  - options of transaction
+     * @param callback - callback
+     * @param <R>      - type of result
+     * @return         - result of callback
+     * @throws UnexpectedRollbackException - if callback returned, but transaction was rolled back since joined scope failed
+     */
+    public <R> R inTransaction(@NotNull TransactionOptions options, @NotNull Function<Transaction, R> callback) {
+        Transaction outer = currentTransaction.get();
+        if (outer != null) {
+            try {
+                return callback.apply(outer);
+            } catch (RuntimeException | Error e) {
+                outer.setFailedInJoinedScope();
+                throw e;
+            }
+        }
+        Transaction transaction;
+        try {
+            transaction = Transaction.begin(acquire(), options);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        R result;
+        currentTransaction.set(transaction);
+        try {
+            result = callback.apply(transaction);
+        } catch (RuntimeException | Error e) {
+            currentTransaction.remove();
+            try {
+                transaction.end(false);
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        }
+        currentTransaction.remove();
+        try {
+            transaction.end(!transaction.isRollbackOnly());
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        if (transaction.isFailedInJoinedScope()) {
+            throw new UnexpectedRollbackException("Transaction was rolled back since joined scope failed!");
+        }
+        return result;
+    }
+
+    /**
+     * Method to run action in transaction with default options.
+     *
+     * @param action - action
+     * @see #inTransaction(TransactionOptions, Function)
+     */
+    public void runInTransaction(@NotNull Consumer<Transaction> action) {
+        runInTransaction(TransactionOptions.DEFAULT, action);
+    }
+
+    /**
+     * Method to run action in transaction.
+     *
+     * @param options - options of transaction
+     * @param action  - action
+     * @see #inTransaction(TransactionOptions, Function)
+     */
+    public void runInTransaction(@NotNull TransactionOptions options, @NotNull Consumer<Transaction> action) {
+        inTransaction(options, transaction -> {
+            action.accept(transaction);
+            return null;
+        });
+    }
+
+    /**
+     * Method to check whether current thread runs inside transaction scope of this data source.
+     *
+     * @return - {@literal true} if transaction is active
+     */
+    public boolean isInTransaction() {
+        return currentTransaction.get() != null;
+    }
+
+    /**
+     * Method to get transaction of current thread.
+     *
+     * @return - transaction or {@literal null} if current thread runs outside transaction scope
+     */
+    @Nullable
+    public Transaction getCurrentTransaction() {
+        return currentTransaction.get();
+    }
+
+    /**
+     * Method to run request on executor of asynchronous requests.
+     *
+     * @param request - request
+     * @param <R>     - type of result
+     * @return        - future of request result, it fails if request is rejected by executor
+     */
+    @NotNull
+    public <R> CompletableFuture<R> supplyAsync(@NotNull Supplier<R> request) {
+        try {
+            return CompletableFuture.supplyAsync(request, getExecutor());
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<R> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    /**
+     * Method to get executor of asynchronous requests.
+     *
+     * @return - executor from settings or own executor
+     */
+    @NotNull
+    public Executor getExecutor() {
+        Executor executor = settings.getAsyncExecutor();
+        if (executor != null) {
+            return executor;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("Data source is closed!");
+            }
+            if (ownExecutor == null) {
+                ownExecutor = AsyncExecutors.create(settings);
+            }
+            return ownExecutor;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to start measuring of statement for log of slow queries. It should be called after connection is acquired,
+     * so waiting for saturated pool does not make every statement slow.
+     *
+     * @return - current time or 0 if log is disabled
+     */
+    long startQuery() {
+        return slowQueryLog == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Method to log statement if it took longer than threshold. It should be called after connection is released,
+     * so capture of plan does not wait for it.
+     *
+     * @param sql        - statement
+     * @param arguments  - arguments or {@literal null} if statement was executed for many values, its plan is not captured then
+     * @param startNanos - time returned by {@link #startQuery()}
+     * @param rows       - count of returned rows
+     */
+    void recordQuery(@NotNull String sql, @Nullable Object[] arguments, long startNanos, long rows) {
+        if (slowQueryLog != null) {
+            slowQueryLog.record(this, sql, arguments, false, System.nanoTime() - startNanos, rows);
+        }
+    }
+
+    /**
+     * Method to log modifying statement if it took longer than threshold, its plan is captured without {@code ANALYZE}.
+     *
+     * @param sql        - statement
+     * @param arguments  - arguments or {@literal null} if statement was executed for many values, its plan is not captured then
+     * @param startNanos - time returned by {@link #startQuery()}
+     * @param rows       - count of affected rows
+     * @see #recordQuery(String, Object[], long, long)
+     */
+    void recordUpdate(@NotNull String sql, @Nullable Object[] arguments, long startNanos, long rows) {
+        if (slowQueryLog != null) {
+            slowQueryLog.record(this, sql, arguments, true, System.nanoTime() - startNanos, rows);
+        }
+    }
+
+    /**
+     * Method to get current state of pool.
+     *
+     * @return - pool statistics
+     */
+    @NotNull
+    public PoolStatistics getStatistics() {
+        lock.lock();
+        try {
+            return new PoolStatistics(active, idle.size(), waiters, acquireCount, acquireNanos, maxAcquireNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to close connections which were idle longer than configured timeout.
+     * It is run periodically by data source, so it need not be called by owner.
+     */
+    public void evictIdleConnections() {
+        List<PooledConnection> evicted;
+        lock.lock();
+        try {
+            evicted = pollExpired();
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(PooledConnection::destroy);
+    }
+
+    /**
+     * Method to close all idle connections, active connections are closed when they are returned.
+     * Own executor of asynchronous requests stops accepting requests, already submitted ones are completed.
+     */
+    @Override
+    public void close() {
+        List<PooledConnection> connections;
+        ExecutorService executor;
+        ScheduledExecutorService reaper;
+        lock.lock();
+        try {
+            closed = true;
+            connections = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            released.signalAll();
+            executor = ownExecutor;
+            reaper = idleReaper;
+        } finally {
+            lock.unlock();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        connections.forEach(PooledConnection::destroy);
+    }
+
+    /**
+     * Method to return connection to pool.
+     *
+     * @param connection - connection to return
+     */
+    void release(@NotNull PooledConnection connection) {
+        boolean broken = !reset(connection.getConnection());
+        List<PooledConnection> evicted;
+        lock.lock();
+        try {
+            active--;
+            if (closed || broken) {
+                total--;
+                evicted = new ArrayList<>();
+                evicted.add(connection);
+            } else {
+                connection.touch();
+                idle.addFirst(connection);
+                evicted = pollExpired();
+                startIdleReaper();
+            }
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(PooledConnection::destroy);
+    }
+
+    /**
+     * Method to take connection from pool.
+     *
+     * @return - pooled connection
+     * @throws SQLException - if connection was not acquired in time or could not be opened
+     */
+    @NotNull
+    private PooledConnection acquire() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.getAcquireTimeoutMillis());
+        while (true) {
+            PooledConnection connection = reserve(deadline);
+            if (connection == null) {
+                connection = open();
+            } else if (!validate(connection)) {
+                discard(connection);
+                continue;
+            }
+            recordAcquire(System.nanoTime() - start);
+            return connection;
+        }
+    }
+
+    /**
+     * Method to take idle connection or reserve place for new one.
+     *
+     * @param deadline - time when waiting should be stopped
+     * @return         - idle connection or {@literal null} if new connection should be opened
+     * @throws SQLException - if pool is closed or timeout exceeded
+     */
+    @Nullable
+    private PooledConnection reserve(long deadline) throws SQLException {
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Data source is closed!");
+                }
+                PooledConnection connection = idle.pollFirst();
+                if (connection != null || total < settings.getMaximumPoolSize()) {
+                    if (connection == null) {
+                        total++;
+                    }
+                    active++;
+                    return connection;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SQLTransientConnectionException("Connection was not acquired in " + settings.getAcquireTimeoutMillis() + " ms!");
+                }
+                waiters++;
+                try {
+                    released.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for connection!");
+                } finally {
+                    waiters--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to open new physical connection in reserved place.
+     *
+     * @return - new connection
+     * @throws SQLException - if connection could not be opened
+     */
+    @NotNull
+    private PooledConnection open() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", name);
+        properties.setProperty("password", password);
+        properties.setProperty("reWriteBatchedInserts", String.valueOf(settings.isReWriteBatchedInserts()));
+        try {
+            return new PooledConnection(this, DriverManager.getConnection(url, properties));
+        } catch (SQLException | RuntimeException e) {
+            free();
+            throw e;
+        }
+    }
+
+    /**
+     * Method to check connection which was idle for a long time.
+     *
+     * @param connection - connection to check
+     * @return           - {@literal true} if connection can be used
+     */
+    private boolean validate(@NotNull PooledConnection connection) {
+        long idleNanos = System.nanoTime() - connection.getLastUsedNanos();
+        if (idleNanos < TimeUnit.MILLISECONDS.toNanos(settings.getValidationIntervalMillis())) {
+            return true;
+        }
+        try {
+            return connection.getConnection().isValid(settings.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method to restore default state of connection before it gets back to pool.
+     *
+     * @param connection - physical connection
+     * @return           - {@literal false} if connection is broken
+     */
+    private boolean reset(@NotNull Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method to throw away broken connection which was taken from pool.
+     *
+     * @param connection - connection
+     */
+    private void discard(@NotNull PooledConnection connection) {
+        connection.destroy();
+        free();
+    }
+
+    /**
+     * Method to free place of connection which was taken from pool.
+     */
+    private void free() {
+        lock.lock();
+        try {
+            active--;
+            total--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to start periodic eviction of idle connections unless it is started or disabled, should be called under lock.
+     * Connection is closed when it was idle from one to two timeouts.
+     */
+    private void startIdleReaper() {
+        long idleTimeout = settings.getIdleTimeoutMillis();
+        if (idleReaper != null || idleTimeout <= 0) {
+            return;
+        }
+        idleReaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-idle-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        idleReaper.scheduleWithFixedDelay(this::evictIdleConnections, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to remove expired connections from idle queue, should be called under lock.
+     *
+     * @return - removed connections
+     */
+    @NotNull
+    private List<PooledConnection> pollExpired() {
+        List<PooledConnection> expired = new ArrayList<>();
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos(settings.getIdleTimeoutMillis());
+        if (idleTimeout <= 0) {
+            return expired;
+        }
+        long now = System.nanoTime();
+        while (!idle.isEmpty() && now - idle.peekLast().getLastUsedNanos() > idleTimeout) {
+            expired.add(idle.pollLast());
+            total--;
+        }
+        return expired;
+    }
+
+    /**
+     * Method to account time spent to acquire connection.
+     *
+     * @param nanos - acquire time
+     */
+    private void recordAcquire(long nanos) {
+        lock.lock();
+        try {
+            acquireCount++;
+            acquireNanos += nanos;
+            maxAcquireNanos = Math.max(maxAcquireNanos, nanos);
+        } finally {
+            lock.unlock();
+        }
+    }
 }
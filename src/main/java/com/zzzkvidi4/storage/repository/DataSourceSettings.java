@@ -0,0 +1,104 @@
+package com.zzzkvidi4.storage.repository;
+
+import com.zzzkvidi4.storage.metrics.MetricsRecorder;
+import lombok.Builder;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Settings of {@link DataSource} connection pool.
+ */
+@Getter
+@Builder
+public final class DataSourceSettings {
+    @NotNull
+    public static final DataSourceSettings DEFAULT = builder().build();
+
+    /**
+     * Maximum count of physical connections opened by pool.
+     */
+    @Builder.Default
+    private final int maximumPoolSize = 10;
+    /**
+     * Time after which unused connection is closed by background thread of pool, non-positive value disables eviction.
+     */
+    @Builder.Default
+    private final long idleTimeoutMillis = 10 * 60 * 1000L;
+    /**
+     * Maximum time to wait for free connection.
+     */
+    @Builder.Default
+    private final long acquireTimeoutMillis = 30 * 1000L;
+    /**
+     * Connection which was idle longer than this time is validated before it is handed out.
+     */
+    @Builder.Default
+    private final long validationIntervalMillis = 30 * 1000L;
+    /**
+     * Timeout of connection validation.
+     */
+    @Builder.Default
+    private final int validationTimeoutSeconds = 5;
+    /**
+     * Count of prepared statements kept open per connection, non-positive value disables caching.
+     */
+    @Builder.Default
+    private final int statementCacheSize = 64;
+    /**
+     * Count of rows fetched from server-side cursor at once by streaming queries.
+     */
+    @Builder.Default
+    private final int fetchSize = 1000;
+    /**
+     * Count of statements sent to database in one batch by bulk write methods.
+     */
+    @Builder.Default
+    private final int batchSize = 500;
+    /**
+     * Whether driver may rewrite batched inserts into multi-row inserts.
+     */
+    @Builder.Default
+    private final boolean reWriteBatchedInserts = true;
+    /**
+     * Size in bytes of buffer filled with rows before they are sent to database by COPY.
+     */
+    @Builder.Default
+    private final int copyBufferSize = 64 * 1024;
+    /**
+     * Count of threads running asynchronous requests.
+     */
+    @Builder.Default
+    private final int asyncPoolSize = 10;
+    /**
+     * Count of asynchronous requests waiting for free thread, further requests are rejected.
+     */
+    @Builder.Default
+    private final int asyncQueueCapacity = 1024;
+    /**
+     * Whether asynchronous requests run on virtual threads (JDK 21+), platform threads are used on older JDK.
+     * Count of concurrent requests is bounded by connection pool in this case.
+     */
+    @Builder.Default
+    private final boolean virtualThreads = false;
+    /**
+     * Executor of asynchronous requests, it is not shut down with data source. Own executor is created when it is absent.
+     */
+    @Nullable
+    @Builder.Default
+    private final Executor asyncExecutor = null;
+    /**
+     * Recorder of metrics of repository and service operations, nothing is timed by default.
+     */
+    @NotNull
+    @Builder.Default
+    private final MetricsRecorder metricsRecorder = MetricsRecorder.DISABLED;
+    /**
+     * Settings of log of slow queries of repositories, nothing is logged when they are absent.
+     */
+    @Nullable
+    @Builder.Default
+    private final SlowQuerySettings slowQuerySettings = null;
+}
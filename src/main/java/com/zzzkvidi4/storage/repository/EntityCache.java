@@ -0,0 +1,178 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size bounded cache of entity states by id with expiration.
+ * Column values are cached instead of entities, so clients can not change cached state.
+ */
+final class EntityCache {
+    @NotNull
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long timeToLiveNanos;
+    /**
+     * Entries by id, least recently used first.
+     */
+    @NotNull
+    private final Map<Object, Entry> entries;
+    /**
+     * Counter of changes, state loaded before some change is not put into cache.
+     */
+    private long generation = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    EntityCache(@NotNull CacheSettings settings) {
+        if (settings.getMaximumSize() <= 0) {
+            throw new IllegalArgumentException("Cache size should be positive!");
+        }
+        int maximumSize = settings.getMaximumSize();
+        timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(settings.getTimeToLiveMillis());
+        entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(@NotNull Map.Entry<Object, Entry> eldest) {
+                if (size() <= maximumSize) {
+                    return false;
+                }
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Method to get cached state of entity.
+     *
+     * @param id - entity id
+     * @return   - column values or {@literal null} if entity is not cached
+     */
+    @Nullable
+    Object[] get(@NotNull Object id) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry != null && timeToLiveNanos > 0 && System.nanoTime() - entry.cachedNanos > timeToLiveNanos) {
+                entries.remove(id);
+                evictions++;
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to get current generation before state is loaded from database.
+     *
+     * @return - generation
+     */
+    long getGeneration() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to cache state loaded from database unless cache was changed while it was loaded.
+     *
+     * @param id         - entity id
+     * @param state      - column values
+     * @param generation - generation before state was loaded
+     */
+    void putLoaded(@NotNull Object id, @NotNull Object[] state, long generation) {
+        lock.lock();
+        try {
+            if (this.generation == generation) {
+                entries.put(id, new Entry(state));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to cache state written to database.
+     *
+     * @param id    - entity id
+     * @param state - column values
+     */
+    void put(@NotNull Object id, @NotNull Object[] state) {
+        lock.lock();
+        try {
+            generation++;
+            entries.put(id, new Entry(state));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to remove entity from cache.
+     *
+     * @param id - entity id
+     */
+    void invalidate(@NotNull Object id) {
+        lock.lock();
+        try {
+            generation++;
+            entries.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to remove all entities from cache.
+     */
+    void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @NotNull
+    CacheStatistics getStatistics() {
+        lock.lock();
+        try {
+            return new CacheStatistics(hits, misses, evictions, entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cached state with time it was cached.
+     */
+    private static final class Entry {
+        @NotNull
+        private final Object[] state;
+        private final long cachedNanos;
+
+        private Entry(@NotNull Object[] state) {
+            this.state = state;
+            this.cachedNanos = System.nanoTime();
+        }
+    }
+}
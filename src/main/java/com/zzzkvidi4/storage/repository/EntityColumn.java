@@ -0,0 +1,68 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Mapping of entity field to column.
+ *
+ * @param <K> - type of entity
+ */
+public interface EntityColumn<K> {
+    /**
+     * Method to get column name.
+     *
+     * @return - column name from {@link com.zzzkvidi4.storage.annotation.Column}
+     */
+    @NotNull
+    String getName();
+
+    /**
+     * Method to get type of column.
+     *
+     * @return - column type
+     */
+    @NotNull
+    ColumnType getType();
+
+    /**
+     * Method to read column into entity field.
+     *
+     * @param resultSet - result set positioned on row
+     * @param index     - index of column in result set
+     * @param entity    - entity to fill
+     * @throws SQLException - if column could not be read
+     */
+    void read(@NotNull ResultSet resultSet, int index, @NotNull K entity) throws SQLException;
+
+    /**
+     * Method to set up statement argument from entity field.
+     *
+     * @param statement - statement
+     * @param index     - argument index
+     * @param entity    - entity to get value from
+     * @throws SQLException - if argument could not be set
+     */
+    void write(@NotNull PreparedStatement statement, int index, @NotNull K entity) throws SQLException;
+
+    /**
+     * Method to get field value.
+     *
+     * @param entity - entity
+     * @return       - value of field (boxed for primitives)
+     */
+    @Nullable
+    Object getValue(@NotNull K entity);
+
+    /**
+     * Method to set field value.
+     *
+     * @param entity - entity
+     * @param value  - value of field (boxed for primitives)
+     */
+    void setValue(@NotNull K entity, @Nullable Object value);
+}
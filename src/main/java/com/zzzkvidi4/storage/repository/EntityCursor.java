@@ -0,0 +1,147 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Server-side cursor handing out entities one by one, owns connection until it is closed.
+ *
+ * @param <K> - type of entity
+ */
+final class EntityCursor<K> extends Spliterators.AbstractSpliterator<K> implements AutoCloseable {
+    @NotNull
+    private final Connection connection;
+    @NotNull
+    private final PreparedStatement statement;
+    @NotNull
+    private final ResultSet resultSet;
+    @NotNull
+    private final RowMapper<K> mapper;
+    /**
+     * Whether cursor started its own transaction, otherwise it runs inside transaction scope.
+     */
+    private final boolean local;
+    @NotNull
+    private final CloseListener listener;
+    /**
+     * Time when query was executed.
+     */
+    private final long startNanos;
+    private long rows = 0;
+    private boolean closed = false;
+
+    private EntityCursor(@NotNull Connection connection, @NotNull PreparedStatement statement, @NotNull ResultSet resultSet, @NotNull RowMapper<K> mapper,
+                         boolean local, @NotNull CloseListener listener, long startNanos) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.mapper = mapper;
+        this.local = local;
+        this.listener = listener;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Method to open cursor, rows are fetched by portions of fetch size inside transaction.
+     *
+     * @param connection - connection, it is closed with cursor
+     * @param metadata   - metadata of entity
+     * @param sql        - request
+     * @param fetchSize  - count of rows fetched at once
+     * @param binder     - callback to set up statement arguments
+     * @param listener   - callback called when cursor is closed
+     * @param <K>        - type of entity
+     * @return           - opened cursor
+     * @throws SQLException - if query failed, connection is closed in this case
+     */
+    @NotNull
+    static <K> EntityCursor<K> open(@NotNull Connection connection, @NotNull EntityMetadata<K> metadata, @NotNull String sql, int fetchSize,
+                                    @NotNull ArgumentsBinder binder, @NotNull CloseListener listener) throws SQLException {
+        PreparedStatement statement = null;
+        try {
+            boolean local = Repository.beginLocalTransaction(connection);
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            binder.bind(statement);
+            long startNanos = System.nanoTime();
+            ResultSet resultSet = statement.executeQuery();
+            return new EntityCursor<>(connection, statement, resultSet, RowMapper.of(metadata, resultSet), local, listener, startNanos);
+        } catch (SQLException | RuntimeException e) {
+            if (statement != null) {
+                statement.close();
+            }
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(@NotNull Consumer<? super K> action) {
+        try {
+            if (closed || !resultSet.next()) {
+                return false;
+            }
+            ++rows;
+            action.accept(mapper.map(resultSet));
+            return true;
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Method to close result set, statement and give connection back to pool.
+     * Listener is called after connection is released, if cursor was closed successfully.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            resultSet.close();
+            statement.close();
+            if (local) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // connection is returned to pool anyway
+            }
+        }
+        listener.closed(startNanos, rows);
+    }
+
+    /**
+     * Callback to set up statement arguments.
+     */
+    interface ArgumentsBinder {
+        void bind(@NotNull PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Callback to get result of cursor.
+     */
+    interface CloseListener {
+        /**
+         * Method called when cursor is closed.
+         *
+         * @param startNanos - time when query was executed
+         * @param rows       - count of read rows
+         */
+        void closed(long startNanos, long rows);
+    }
+}
@@ -0,0 +1,53 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Information about entity or projection class needed to read and write it.
+ *
+ * @param <K> - type of entity
+ */
+public interface EntityMetadata<K> {
+    /**
+     * Method to get entity class.
+     *
+     * @return - entity class
+     */
+    @NotNull
+    Class<K> getEntityClass();
+
+    /**
+     * Method to get table name.
+     *
+     * @return - value of {@link com.zzzkvidi4.storage.annotation.Table} or {@literal null} for projections
+     */
+    @Nullable
+    String getTable();
+
+    /**
+     * Method to get mapped columns.
+     *
+     * @return - columns in order of field declaration
+     */
+    @NotNull
+    List<EntityColumn<K>> getColumns();
+
+    /**
+     * Method to get id column.
+     *
+     * @return - id column or {@literal null} if it is not specified
+     */
+    @Nullable
+    EntityColumn<K> getIdColumn();
+
+    /**
+     * Method to create empty entity.
+     *
+     * @return - new entity
+     */
+    @NotNull
+    K newInstance();
+}
@@ -0,0 +1,57 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of entity metadata shared by all repositories.
+ * Metadata generated at compile time ({@code <Entity>_Metadata}) is preferred, reflection is used when it is absent.
+ */
+public final class EntityMetadataRegistry {
+    @NotNull
+    private static final String GENERATED_SUFFIX = "_Metadata";
+    @NotNull
+    private static final Map<Class<?>, EntityMetadata<?>> METADATA = new ConcurrentHashMap<>();
+
+    private EntityMetadataRegistry() {
+    }
+
+    /**
+     * Method to get metadata of class.
+     *
+     * @param clazz - entity or projection class
+     * @param <K>   - type of entity
+     * @return      - metadata
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <K> EntityMetadata<K> get(@NotNull Class<K> clazz) {
+        return (EntityMetadata<K>) METADATA.computeIfAbsent(clazz, EntityMetadataRegistry::load);
+    }
+
+    /**
+     * Method to load generated metadata or build it with reflection.
+     *
+     * @param clazz - entity or projection class
+     * @return      - metadata
+     */
+    @NotNull
+    private static EntityMetadata<?> load(@NotNull Class<?> clazz) {
+        Class<?> generated;
+        try {
+            generated = Class.forName(clazz.getName() + GENERATED_SUFFIX, true, clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return new ReflectiveEntityMetadata<>(clazz);
+        }
+        if (!EntityMetadata.class.isAssignableFrom(generated)) {
+            return new ReflectiveEntityMetadata<>(clazz);
+        }
+        try {
+            return (EntityMetadata<?>) generated.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+}
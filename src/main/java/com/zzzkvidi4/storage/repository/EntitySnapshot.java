@@ -0,0 +1,25 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Column values of entity taken by {@link Repository#snapshot(Object)} to find changed columns later.
+ *
+ * @param <T> - type of entity
+ */
+public final class EntitySnapshot<T> {
+    /**
+     * Values in order of metadata columns.
+     */
+    @NotNull
+    private final Object[] state;
+
+    EntitySnapshot(@NotNull Object[] state) {
+        this.state = state;
+    }
+
+    @NotNull
+    Object[] getState() {
+        return state;
+    }
+}
@@ -8,6 +8,6 @@ import org.jetbrains.annotations.NotNull;
  */
 public final class InvoiceItemRepository extends Repository<InvoiceItem, String> {
     public InvoiceItemRepository(@NotNull DataSource dataSource) {
-        super(dataSource);
+        super(dataSource, InvoiceItem.class);
     }
 }
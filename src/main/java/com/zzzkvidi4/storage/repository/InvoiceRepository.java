@@ -8,6 +8,6 @@ import org.jetbrains.annotations.NotNull;
  */
 public final class InvoiceRepository extends Repository<Invoice, String> {
     public InvoiceRepository(@NotNull DataSource dataSource) {
-        super(dataSource);
+        super(dataSource, Invoice.class);
     }
 }
@@ -8,6 +8,16 @@ import org.jetbrains.annotations.NotNull;
  */
 public final class ItemRepository extends Repository<Item, String> {
     public ItemRepository(@NotNull DataSource dataSource) {
-        super(dataSource);
+        super(dataSource, Item.class);
+    }
+
+    /**
+     * Constructor of repository caching entities found by id.
+     *
+     * @param dataSource    - data source
+     * @param cacheSettings - settings of entity cache
+     */
+    public ItemRepository(@NotNull DataSource dataSource, @NotNull CacheSettings cacheSettings) {
+        super(dataSource, Item.class, cacheSettings);
     }
 }
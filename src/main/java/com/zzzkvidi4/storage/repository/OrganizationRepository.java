@@ -8,6 +8,16 @@ import org.jetbrains.annotations.NotNull;
  */
 public final class OrganizationRepository extends Repository<Organization, String> {
     public OrganizationRepository(@NotNull DataSource dataSource) {
-        super(dataSource);
+        super(dataSource, Organization.class);
+    }
+
+    /**
+     * Constructor of repository caching entities found by id.
+     *
+     * @param dataSource    - data source
+     * @param cacheSettings - settings of entity cache
+     */
+    public OrganizationRepository(@NotNull DataSource dataSource, @NotNull CacheSettings cacheSettings) {
+        super(dataSource, Organization.class, cacheSettings);
     }
 }
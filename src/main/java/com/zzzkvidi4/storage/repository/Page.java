@@ -0,0 +1,30 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Page of entities found by keyset pagination.
+ *
+ * @param <T> - type of entity
+ * @param <C> - type of cursor
+ */
+@Getter
+@RequiredArgsConstructor
+public final class Page<T, C> {
+    @NotNull
+    private final List<T> content;
+    /**
+     * Cursor to request next page with, {@literal null} if this page is the last one.
+     */
+    @Nullable
+    private final C nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Order of keyset pagination: columns of entity sorted in one direction, id column is appended to make order unique.
+ * Columns should be not null and covered by index to fetch every page in constant time.
+ */
+@Getter
+public final class PageOrder {
+    @NotNull
+    private final List<String> columns;
+    private final boolean descending;
+
+    private PageOrder(@NotNull List<String> columns, boolean descending) {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Order columns are not specified!");
+        }
+        this.columns = columns;
+        this.descending = descending;
+    }
+
+    @NotNull
+    public static PageOrder ascending(@NotNull String... columns) {
+        return new PageOrder(Arrays.asList(columns), false);
+    }
+
+    @NotNull
+    public static PageOrder descending(@NotNull String... columns) {
+        return new PageOrder(Arrays.asList(columns), true);
+    }
+}
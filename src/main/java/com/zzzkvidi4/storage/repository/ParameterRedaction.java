@@ -0,0 +1,19 @@
+package com.zzzkvidi4.storage.repository;
+
+/**
+ * Way to hide statement arguments written to slow query log.
+ */
+public enum ParameterRedaction {
+    /**
+     * Arguments are written as is.
+     */
+    NONE,
+    /**
+     * Text arguments are replaced by their type, numbers, dates and timestamps are written as is.
+     */
+    TEXT,
+    /**
+     * All arguments are replaced by their type.
+     */
+    ALL
+}
@@ -0,0 +1,47 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Snapshot of {@link DataSource} pool state.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class PoolStatistics {
+    /**
+     * Connections given out to clients.
+     */
+    private final int active;
+    /**
+     * Connections waiting in pool.
+     */
+    private final int idle;
+    /**
+     * Threads waiting for connection.
+     */
+    private final int waiters;
+    /**
+     * Count of successful acquires.
+     */
+    private final long acquireCount;
+    /**
+     * Total time spent in acquires.
+     */
+    private final long acquireNanos;
+    /**
+     * Longest acquire.
+     */
+    private final long maxAcquireNanos;
+
+    /**
+     * Method to get average acquire latency.
+     *
+     * @return - average acquire time in milliseconds
+     */
+    public double getAverageAcquireMillis() {
+        return acquireCount == 0 ? 0 : acquireNanos / 1_000_000.0 / acquireCount;
+    }
+}
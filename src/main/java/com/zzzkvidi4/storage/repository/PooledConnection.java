@@ -0,0 +1,290 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Physical connection owned by {@link DataSource} pool.
+ */
+final class PooledConnection {
+    @NotNull
+    private final DataSource dataSource;
+    @Getter
+    @NotNull
+    private final Connection connection;
+    @Getter
+    private long lastUsedNanos;
+    /**
+     * Prepared statements by sql, least recently used first.
+     */
+    @NotNull
+    private final Map<String, CachedStatement> statements;
+
+    PooledConnection(@NotNull DataSource dataSource, @NotNull Connection connection) {
+        this.dataSource = dataSource;
+        this.connection = connection;
+        this.lastUsedNanos = System.nanoTime();
+        int statementCacheSize = dataSource.getSettings().getStatementCacheSize();
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(@NotNull Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Method to create handle given out to client, closing of handle returns connection to pool.
+     *
+     * @return - connection handle
+     */
+    @NotNull
+    Connection borrow() {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle(false)
+        );
+    }
+
+    /**
+     * Method to create handle given out to client inside transaction, closing of handle keeps connection borrowed.
+     *
+     * @return - connection handle
+     */
+    @NotNull
+    Connection share() {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle(true)
+        );
+    }
+
+    /**
+     * Method to mark connection as used just now.
+     */
+    void touch() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * Method to get prepared statement from cache or prepare new one.
+     *
+     * @param sql - sql of statement
+     * @return    - statement handle, closing of handle returns statement to cache
+     * @throws SQLException - if statement could not be prepared
+     */
+    @NotNull
+    private PreparedStatement prepareStatement(@NotNull String sql) throws SQLException {
+        if (dataSource.getSettings().getStatementCacheSize() <= 0) {
+            return connection.prepareStatement(sql);
+        }
+        CachedStatement statement = statements.get(sql);
+        if (statement != null && statement.inUse) {
+            // the same query is already executing on this connection (e.g. nested iteration)
+            return connection.prepareStatement(sql);
+        }
+        if (statement == null) {
+            statement = new CachedStatement(connection.prepareStatement(sql));
+            statements.put(sql, statement);
+        }
+        return statement.borrow();
+    }
+
+    /**
+     * Method to close physical connection ignoring errors.
+     */
+    void destroy() {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // connection is thrown away anyway
+        }
+    }
+
+    /**
+     * Handle which delegates calls to physical connection until it is closed.
+     */
+    private final class Handle implements InvocationHandler {
+        /**
+         * Whether connection is borrowed by another handle which returns it to pool.
+         */
+        private final boolean shared;
+        private boolean closed = false;
+
+        private Handle(boolean shared) {
+            this.shared = shared;
+        }
+
+        @Override
+        public Object invoke(@NotNull Object proxy, @NotNull Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        if (!shared) {
+                            dataSource.release(PooledConnection.this);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + connection;
+                case "prepareStatement":
+                    if (!closed && args.length == 1) {
+                        return prepareStatement((String) args[0]);
+                    }
+                    // statements with extra options are not cached
+                    return delegate(method, args);
+                default:
+                    return delegate(method, args);
+            }
+        }
+
+        /**
+         * Method to call method of physical connection unless handle is closed.
+         *
+         * @param method - method
+         * @param args   - arguments
+         * @return       - result of method
+         * @throws Throwable - exception thrown by method
+         */
+        private Object delegate(@NotNull Method method, Object[] args) throws Throwable {
+            if (closed) {
+                throw new SQLException("Connection is closed!");
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Prepared statement kept open between borrows of connection.
+     */
+    private static final class CachedStatement {
+        @NotNull
+        private final PreparedStatement statement;
+        private boolean inUse = false;
+        private boolean evicted = false;
+
+        private CachedStatement(@NotNull PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        /**
+         * Method to create handle which returns statement to cache on close.
+         *
+         * @return - statement handle
+         */
+        @NotNull
+        private PreparedStatement borrow() {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementHandle()
+            );
+        }
+
+        /**
+         * Method to remove statement from cache, statement in use is closed when it is returned.
+         */
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                close();
+            }
+        }
+
+        /**
+         * Method to return statement to cache after client closed it.
+         * Parameters and limits set by client are reset, so they do not affect next borrower.
+         *
+         * @throws SQLException - if statement could not be reset
+         */
+        private void giveBack() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                close();
+            } else {
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.setFetchSize(0);
+                statement.setQueryTimeout(0);
+                statement.setMaxRows(0);
+            }
+        }
+
+        /**
+         * Method to close statement ignoring errors.
+         */
+        private void close() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // statement is thrown away anyway
+            }
+        }
+
+        /**
+         * Handle which delegates calls to prepared statement until it is closed.
+         */
+        private final class StatementHandle implements InvocationHandler {
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(@NotNull Object proxy, @NotNull Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            giveBack();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || statement.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return statement.toString();
+                    default:
+                        if (closed) {
+                            throw new SQLException("Statement is closed!");
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.zzzkvidi4.storage.repository;
+
+import com.zzzkvidi4.storage.annotation.Column;
+import com.zzzkvidi4.storage.annotation.Id;
+import com.zzzkvidi4.storage.annotation.Table;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metadata built with reflection, fields are accessed through method handles resolved once.
+ *
+ * @param <K> - type of entity
+ */
+final class ReflectiveEntityMetadata<K> implements EntityMetadata<K> {
+    @NotNull
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    @Getter
+    @NotNull
+    private final Class<K> entityClass;
+    @Getter
+    @Nullable
+    private final String table;
+    @Getter
+    @NotNull
+    private final List<EntityColumn<K>> columns;
+    @Getter
+    @Nullable
+    private final EntityColumn<K> idColumn;
+    @NotNull
+    private final MethodHandle constructor;
+
+    ReflectiveEntityMetadata(@NotNull Class<K> entityClass) {
+        this.entityClass = entityClass;
+        Table tableAnnotation = entityClass.getAnnotation(Table.class);
+        this.table = tableAnnotation == null ? null : tableAnnotation.value();
+
+        Map<String, EntityColumn<K>> columnsByName = new LinkedHashMap<>();
+        EntityColumn<K> id = null;
+        List<Field> fields = new ArrayList<>();
+        Collections.addAll(fields, entityClass.getFields());
+        Collections.addAll(fields, entityClass.getDeclaredFields());
+        for (Field field : fields) {
+            Column column = field.getAnnotation(Column.class);
+            if (column == null || columnsByName.containsKey(column.value())) {
+                continue;
+            }
+            EntityColumn<K> entityColumn = createColumn(column.value(), field);
+            columnsByName.put(column.value(), entityColumn);
+            if (id == null && field.getAnnotation(Id.class) != null) {
+                id = entityColumn;
+            }
+        }
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columnsByName.values()));
+        this.idColumn = id;
+
+        try {
+            Constructor<K> noArgumentsConstructor = entityClass.getDeclaredConstructor();
+            noArgumentsConstructor.setAccessible(true);
+            this.constructor = LOOKUP.unreflectConstructor(noArgumentsConstructor).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException("No constructor without arguments!");
+        }
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public K newInstance() {
+        try {
+            return (K) (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Method to create column accessor specialized for type of field.
+     *
+     * @param name  - column name
+     * @param field - field
+     * @return      - column
+     */
+    @NotNull
+    private EntityColumn<K> createColumn(@NotNull String name, @NotNull Field field) {
+        Class<?> clazz = field.getType();
+        ColumnType type = ColumnType.of(clazz);
+        if (type == null) {
+            throw new RuntimeException("No extractor!");
+        }
+        MethodHandle getter = findGetter(field);
+        MethodHandle setter = findSetter(field);
+        if (clazz == int.class) {
+            return new IntColumn<>(name, type, getter, setter);
+        } else if (clazz == long.class) {
+            return new LongColumn<>(name, type, getter, setter);
+        } else if (clazz == double.class) {
+            return new DoubleColumn<>(name, type, getter, setter);
+        }
+        return new ObjectColumn<>(name, type, getter, setter);
+    }
+
+    /**
+     * Method to find getter or fall back to field access.
+     *
+     * @param field - field
+     * @return      - handle of type (Object) -> field type
+     */
+    @NotNull
+    private static MethodHandle findGetter(@NotNull Field field) {
+        Method method = findMethod(field.getDeclaringClass(), "get" + capitalize(field.getName()));
+        try {
+            MethodHandle handle;
+            if (method != null && method.getReturnType() == field.getType()) {
+                handle = LOOKUP.unreflect(method);
+            } else {
+                field.setAccessible(true);
+                handle = LOOKUP.unreflectGetter(field);
+            }
+            return handle.asType(MethodType.methodType(erase(field.getType()), Object.class));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Method to find setter or fall back to field access.
+     *
+     * @param field - field
+     * @return      - handle of type (Object, field type) -> void
+     */
+    @NotNull
+    private static MethodHandle findSetter(@NotNull Field field) {
+        Method method = findMethod(field.getDeclaringClass(), "set" + capitalize(field.getName()), field.getType());
+        try {
+            MethodHandle handle;
+            if (method != null) {
+                handle = LOOKUP.unreflect(method);
+            } else {
+                field.setAccessible(true);
+                handle = LOOKUP.unreflectSetter(field);
+            }
+            return handle.asType(MethodType.methodType(void.class, Object.class, erase(field.getType())));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    @Nullable
+    private static Method findMethod(@NotNull Class<?> clazz, @NotNull String name, @NotNull Class<?>... parameterTypes) {
+        try {
+            Method method = clazz.getMethod(name, parameterTypes);
+            return Modifier.isStatic(method.getModifiers()) ? null : method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @NotNull
+    private static Class<?> erase(@NotNull Class<?> clazz) {
+        return clazz.isPrimitive() ? clazz : Object.class;
+    }
+
+    @NotNull
+    private static String capitalize(@NotNull String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Base of columns accessed through method handles.
+     *
+     * @param <K> - type of entity
+     */
+    private static abstract class HandleColumn<K> implements EntityColumn<K> {
+        @Getter
+        @NotNull
+        private final String name;
+        @Getter
+        @NotNull
+        private final ColumnType type;
+        @NotNull
+        final MethodHandle getter;
+        @NotNull
+        final MethodHandle setter;
+
+        HandleColumn(@NotNull String name, @NotNull ColumnType type, @NotNull MethodHandle getter, @NotNull MethodHandle setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @NotNull
+        static RuntimeException rethrow(@NotNull Throwable e) {
+            if (e instanceof RuntimeException) {
+                return (RuntimeException) e;
+            }
+            return new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Column of reference type.
+     *
+     * @param <K> - type of entity
+     */
+    private static final class ObjectColumn<K> extends HandleColumn<K> {
+        ObjectColumn(@NotNull String name, @NotNull ColumnType type, @NotNull MethodHandle getter, @NotNull MethodHandle setter) {
+            super(name, type, getter, setter);
+        }
+
+        @Override
+        public void read(@NotNull ResultSet resultSet, int index, @NotNull K entity) throws SQLException {
+            Object value = getType().read(resultSet, index);
+            try {
+                setter.invokeExact((Object) entity, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void write(@NotNull PreparedStatement statement, int index, @NotNull K entity) throws SQLException {
+            getType().write(statement, index, getValue(entity));
+        }
+
+        @Nullable
+        @Override
+        public Object getValue(@NotNull K entity) {
+            try {
+                return (Object) getter.invokeExact((Object) entity);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setValue(@NotNull K entity, @Nullable Object value) {
+            try {
+                setter.invokeExact((Object) entity, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+
+    /**
+     * Column of {@code int} type.
+     *
+     * @param <K> - type of entity
+     */
+    private static final class IntColumn<K> extends HandleColumn<K> {
+        IntColumn(@NotNull String name, @NotNull ColumnType type, @NotNull MethodHandle getter, @NotNull MethodHandle setter) {
+            super(name, type, getter, setter);
+        }
+
+        @Override
+        public void read(@NotNull ResultSet resultSet, int index, @NotNull K entity) throws SQLException {
+            int value = resultSet.getInt(index);
+            try {
+                setter.invokeExact((Object) entity, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void write(@NotNull PreparedStatement statement, int index, @NotNull K entity) throws SQLException {
+            int value;
+            try {
+                value = (int) getter.invokeExact((Object) entity);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+            statement.setInt(index, value);
+        }
+
+        @NotNull
+        @Override
+        public Object getValue(@NotNull K entity) {
+            try {
+                return (int) getter.invokeExact((Object) entity);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setValue(@NotNull K entity, @Nullable Object value) {
+            try {
+                setter.invokeExact((Object) entity, (int) (Integer) value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+
+    /**
+     * Column of {@code long} type.
+     *
+     * @param <K> - type of entity
+     */
+    private static final class LongColumn<K> extends HandleColumn<K> {
+        LongColumn(@NotNull String name, @NotNull ColumnType type, @NotNull MethodHandle getter, @NotNull MethodHandle setter) {
+            super(name, type, getter, setter);
+        }
+
+        @Override
+        public void read(@NotNull ResultSet resultSet, int index, @NotNull K entity) throws SQLException {
+            long value = resultSet.getLong(index);
+            try {
+                setter.invokeExact((Object) entity, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void write(@NotNull PreparedStatement statement, int index, @NotNull K entity) throws SQLException {
+            long value;
+            try {
+                value = (long) getter.invokeExact((Object) entity);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+            statement.setLong(index, value);
+        }
+
+        @NotNull
+        @Override
+        public Object getValue(@NotNull K entity) {
+            try {
+                return (long) getter.invokeExact((Object) entity);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setValue(@NotNull K entity, @Nullable Object value) {
+            try {
+                setter.invokeExact((Object) entity, (long) (Long) value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+
+    /**
+     * Column of {@code double} type.
+     *
+     * @param <K> - type of entity
+     */
+    private static final class DoubleColumn<K> extends HandleColumn<K> {
+        DoubleColumn(@NotNull String name, @NotNull ColumnType type, @NotNull MethodHandle getter, @NotNull MethodHandle setter) {
+            super(name, type, getter, setter);
+        }
+
+        @Override
+        public void read(@NotNull ResultSet resultSet, int index, @NotNull K entity) throws SQLException {
+            double value = resultSet.getDouble(index);
+            try {
+                setter.invokeExact((Object) entity, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void write(@NotNull PreparedStatement statement, int index, @NotNull K entity) throws SQLException {
+            double value;
+            try {
+                value = (double) getter.invokeExact((Object) entity);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+            statement.setDouble(index, value);
+        }
+
+        @NotNull
+        @Override
+        public Object getValue(@NotNull K entity) {
+            try {
+                return (double) getter.invokeExact((Object) entity);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public void setValue(@NotNull K entity, @Nullable Object value) {
+            try {
+                setter.invokeExact((Object) entity, (double) (Double) value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+}
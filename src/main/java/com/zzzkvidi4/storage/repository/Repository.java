@@ -1,22 +1,29 @@
 package com.zzzkvidi4.storage.repository;
 
-import com.zzzkvidi4.storage.annotation.Column;
-import com.zzzkvidi4.storage.annotation.Id;
-import com.zzzkvidi4.storage.annotation.Table;
+import com.zzzkvidi4.storage.metrics.Metric;
+import com.zzzkvidi4.storage.metrics.MetricsRecorder;
+import com.zzzkvidi4.storage.metrics.OperationTimer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.sql.Date;
-import java.sql.*;
-import java.time.Instant;
-import java.time.LocalDate;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.*;
-import java.util.function.BiFunction;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Repository to work with database.
@@ -25,121 +32,115 @@ import java.util.function.BiFunction;
  * @param <ID>
  */
 public abstract class Repository<T, ID> {
+    /**
+     * Maximum count of arguments of one statement in PostgreSQL protocol.
+     */
+    private static final int MAX_ARGUMENTS = Short.MAX_VALUE;
+    @NotNull
+    private static final String CONSTRAINT_COLUMNS_SQL = "" +
+            "SELECT a.attname\n" +
+            "FROM pg_constraint c\n" +
+            "    INNER JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = ANY (c.conkey)\n" +
+            "WHERE c.conrelid = ?::regclass AND c.conname = ? AND c.contype IN ('p', 'u')";
+    @NotNull
+    private static final String PRIMARY_KEY_SQL = "SELECT conname FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'p'";
+    /**
+     * Separator of values in cursor token, it could not be part of text stored in PostgreSQL.
+     */
+    private static final char CURSOR_DELIMITER = '\0';
     @NotNull
     private final DataSource dataSource;
     @NotNull
     private final String name;
+    @NotNull
+    private final EntityMetadata<T> metadata;
     @Nullable
-    private final Constructor<T> noArgumentsConstructor;
+    private final EntityColumn<T> idColumn;
+    /**
+     * Columns in order of insert statement parameters.
+     */
+    @NotNull
+    private final List<EntityColumn<T>> insertColumns;
+    /**
+     * Columns in order of update statement parameters (without id column).
+     */
+    @NotNull
+    private final List<EntityColumn<T>> updateColumns;
     @NotNull
-    private final Map<String, InternalField> fields = new HashMap<>();
+    private final String findAllSql;
+    @NotNull
+    private final String insertSql;
+    @Nullable
+    private final String findByIdSql;
     @Nullable
-    private Pair<String, InternalField> idField = null;
+    private final String findAllByIdSql;
+    @Nullable
+    private final String updateSql;
+    @Nullable
+    private final String deleteByIdSql;
     @NotNull
-    private static final Map<Class, BiFunction<ResultSet, String, Object>> extractors;
+    private final String stagingName;
     @NotNull
-    private static final Map<Class, ThreeConsumer<PreparedStatement, Integer, Object>> setters;
+    private final String createStagingSql;
     @NotNull
-    private static final Map<Class, Pair<Constructor, Map<String, InternalField>>> CACHE = new HashMap<>();
+    private final String dropStagingSql;
+    /**
+     * Statement to merge staging table by primary key, built when it is used first time.
+     */
+    @Nullable
+    private volatile String mergeStagingSql;
+    /**
+     * Cache of entities found by id, {@literal null} if caching is disabled.
+     */
+    @Nullable
+    private final EntityCache cache;
+    /**
+     * Columns of unique constraints by constraint name.
+     */
+    @NotNull
+    private final Map<String, List<EntityColumn<T>>> constraintColumns = new ConcurrentHashMap<>();
+    /**
+     * Name of primary key constraint, found when it is used first time.
+     */
+    @Nullable
+    private volatile String primaryKey;
 
-    static {
-        extractors = new HashMap<>();
-        extractors.put(
-                String.class,
-                (rs, key) -> {
-                    try {
-                        return rs.getString(key);
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e.getMessage());
-                    }
-                }
-        );
-        extractors.put(
-                Instant.class,
-                (rs, key) -> {
-                    try {
-                        return rs.getTimestamp(key).toInstant();
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e.getMessage());
-                    }
-                }
-        );
-        extractors.put(
-                int.class,
-                (rs, key) -> {
-                    try {
-                        return rs.getInt(key);
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e.getMessage());
-                    }
-                }
-        );
-        extractors.put(
-                double.class,
-                (rs, key) -> {
-                    try {
-                        return rs.getDouble(key);
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e.getMessage());
-                    }
-                }
-        );
-        setters = new HashMap<>();
-        setters.put(
-                String.class,
-                (p, i, v) -> {
-                    try {
-                        p.setString(i, (String) v);
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e.getMessage());
-                    }
-                }
-        );
-        setters.put(
-                Instant.class,
-                (p, i, v) -> {
-                    try {
-                        p.setTimestamp(i, new Timestamp(((Instant)v).toEpochMilli()));
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e.getMessage());
-                    }
-                }
-        );
-        setters.put(
-                Double.class,
-                (p, i, v) -> {
-                    try {
-                        p.setDouble(i, (Double) v);
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e.getMessage());
-                    }
-                }
-        );
-        setters.put(
-                LocalDate.class,
-                (p, i, v) -> {
-                    try {
-                        p.setDate(i, Date.valueOf((LocalDate) v));
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e.getMessage());
-                    }
-                }
-        );
+    Repository(@NotNull DataSource dataSource, @NotNull Class<T> clazz) {
+        this(dataSource, clazz, null);
     }
 
-    Repository(@NotNull DataSource dataSource) {
-        ParameterizedType someClass = (ParameterizedType) this.getClass().getGenericSuperclass();
-        Class<T> clazz = (Class<T>)someClass.getActualTypeArguments()[0];
-
-        Pair<Constructor<T>, Pair<String, InternalField>> info = getInformationAboutClass(this.fields, clazz);
-        Table table = clazz.getAnnotation(Table.class);
-        if (table == null) {
+    Repository(@NotNull DataSource dataSource, @NotNull Class<T> clazz, @Nullable CacheSettings cacheSettings) {
+        metadata = EntityMetadataRegistry.get(clazz);
+        if (metadata.getTable() == null) {
             throw new RuntimeException("No @Table on model!");
         }
-        name = table.value();
-        noArgumentsConstructor = info.getValue1();
-        idField = info.getValue2();
+        name = metadata.getTable();
+        idColumn = metadata.getIdColumn();
         this.dataSource = dataSource;
+
+        insertColumns = metadata.getColumns();
+        updateColumns = new ArrayList<>(insertColumns);
+        findAllSql = "SELECT * FROM " + name;
+        insertSql = "INSERT INTO " + name + " (" + columnNames(insertColumns, ", ") + ") VALUES (" + String.join(", ", Collections.nCopies(insertColumns.size(), "?")) + ")";
+        if (idColumn != null) {
+            updateColumns.remove(idColumn);
+            findByIdSql = findAllSql + " WHERE " + idColumn.getName() + " = ?";
+            findAllByIdSql = findAllSql + " WHERE " + idColumn.getName() + " = ANY (?)";
+            updateSql = "UPDATE " + name + " SET " + columnNames(updateColumns, " = ?, ") + " = ? WHERE " + idColumn.getName() + " = ?";
+            deleteByIdSql = "DELETE FROM " + name + " WHERE " + idColumn.getName() + " = ?";
+        } else {
+            findByIdSql = null;
+            findAllByIdSql = null;
+            updateSql = null;
+            deleteByIdSql = null;
+        }
+        stagingName = name + "_staging";
+        createStagingSql = "CREATE TEMPORARY TABLE " + stagingName + " ON COMMIT DROP AS SELECT " + columnNames(insertColumns, ", ") + " FROM " + name + " WITH NO DATA";
+        dropStagingSql = "DROP TABLE " + stagingName;
+        if (cacheSettings != null && idColumn == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        cache = cacheSettings == null ? null : new EntityCache(cacheSettings);
     }
 
     /**
@@ -150,23 +151,7 @@ public abstract class Repository<T, ID> {
      */
     @NotNull
     public List<T> findAllByQuery(@NotNull String sql, @NotNull Object... arguments) {
-        try (Connection connection = DriverManager.getConnection(dataSource.getUrl(), dataSource.getName(), dataSource.getPassword())) {
-            PreparedStatement statement = connection.prepareStatement(sql);
-            int index = 1;
-            for (Object argument : arguments) {
-                ThreeConsumer<PreparedStatement, Integer, Object> setter = setters.get(argument.getClass());
-                if (setter == null) {
-                    throw new RuntimeException("Setter not specified");
-                }
-                setter.accept(statement, index++, argument);
-            }
-            ResultSet resultSet = statement.executeQuery();
-            List<T> result = listEntities(resultSet, noArgumentsConstructor, fields);
-            statement.close();
-            return result;
-        } catch (SQLException e) {
-            throw new RuntimeException(e.getMessage());
-        }
+        return findAllByQuery(metadata, sql, arguments);
     }
 
     /**
@@ -180,30 +165,62 @@ public abstract class Repository<T, ID> {
      */
     @NotNull
     public <K> List<K> findAllByQuery(@NotNull Class<K> clazz, @NotNull String sql, @NotNull Object... arguments) {
-        Pair<Constructor, Map<String, InternalField>> classInfo = CACHE.get(clazz);
-        if (classInfo == null) {
-            Map<String, InternalField> fields = new HashMap<>();
-            Pair<Constructor<K>, Pair<String, InternalField>> info = getInformationAboutClass(fields, clazz);
-            classInfo = new Pair<>(info.getValue1(), fields);
-            CACHE.put(clazz, classInfo);
-        }
-        try (Connection connection = DriverManager.getConnection(dataSource.getUrl(), dataSource.getName(), dataSource.getPassword())) {
-            PreparedStatement statement = connection.prepareStatement(sql);
-            int index = 1;
-            for (Object argument : arguments) {
-                ThreeConsumer<PreparedStatement, Integer, Object> setter = setters.get(argument.getClass());
-                if (setter == null) {
-                    throw new RuntimeException("Setter not specified");
-                }
-                setter.accept(statement, index++, argument);
-            }
+        return findAllByQuery(EntityMetadataRegistry.get(clazz), sql, arguments);
+    }
 
-            ResultSet resultSet = statement.executeQuery();
-            List<K> result = listEntities(resultSet, (Constructor<K>)classInfo.getValue1(), classInfo.getValue2());
-            statement.close();
-            return result;
-        } catch (SQLException e) {
-            throw new RuntimeException(e.getMessage());
+    /**
+     * Method to stream entities of T class through server-side cursor, memory use does not depend on count of rows.
+     * Stream holds connection and should be closed (e.g. with try-with-resources).
+     *
+     * @param sql       - request
+     * @param arguments - arguments
+     * @return          - stream of entities
+     */
+    @NotNull
+    public Stream<T> stream(@NotNull String sql, @NotNull Object... arguments) {
+        return stream(metadata, sql, arguments);
+    }
+
+    /**
+     * Method to stream any entities through server-side cursor, memory use does not depend on count of rows.
+     * Stream holds connection and should be closed (e.g. with try-with-resources).
+     *
+     * @param clazz     - class of result entity
+     * @param sql       - request
+     * @param arguments - arguments
+     * @param <K>       - type of entity
+     * @return          - stream of entities
+     */
+    @NotNull
+    public <K> Stream<K> stream(@NotNull Class<K> clazz, @NotNull String sql, @NotNull Object... arguments) {
+        return stream(EntityMetadataRegistry.get(clazz), sql, arguments);
+    }
+
+    /**
+     * Method to pass entities of T class to consumer one by one without loading them all.
+     *
+     * @param sql       - request
+     * @param consumer  - consumer of entities
+     * @param arguments - arguments
+     */
+    public void forEach(@NotNull String sql, @NotNull Consumer<? super T> consumer, @NotNull Object... arguments) {
+        try (Stream<T> entities = stream(sql, arguments)) {
+            entities.forEach(consumer);
+        }
+    }
+
+    /**
+     * Method to pass any entities to consumer one by one without loading them all.
+     *
+     * @param clazz     - class of result entity
+     * @param sql       - request
+     * @param consumer  - consumer of entities
+     * @param arguments - arguments
+     * @param <K>       - type of entity
+     */
+    public <K> void forEach(@NotNull Class<K> clazz, @NotNull String sql, @NotNull Consumer<? super K> consumer, @NotNull Object... arguments) {
+        try (Stream<K> entities = stream(clazz, sql, arguments)) {
+            entities.forEach(consumer);
         }
     }
 
@@ -214,7 +231,7 @@ public abstract class Repository<T, ID> {
      */
     @NotNull
     public List<T> findAll() {
-        return findAllByQuery("SELECT * FROM " + name);
+        return findAllByQuery(findAllSql);
     }
 
     /**
@@ -225,25 +242,250 @@ public abstract class Repository<T, ID> {
      */
     @NotNull
     public Optional<T> findById(@NotNull ID id) {
-        if (idField == null) {
+        if (idColumn == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        OperationTimer timer = startTimer("findById");
+        try {
+            Optional<T> entity;
+            // transaction could see its own uncommitted changes, so cache is bypassed
+            if (cache == null || dataSource.isInTransaction()) {
+                entity = loadById(id, timer);
+            } else {
+                Object[] state = cache.get(id);
+                if (state != null) {
+                    entity = Optional.of(fromState(state));
+                } else {
+                    long generation = cache.getGeneration();
+                    entity = loadById(id, timer);
+                    entity.ifPresent(e -> cache.putLoaded(id, toState(e), generation));
+                }
+            }
+            timer.finish(entity.isPresent() ? 1 : 0);
+            return entity;
+        } finally {
+            timer.abort();
+        }
+    }
+
+    /**
+     * Method to find entities by ids with one statement binding ids as array.
+     * Cached entities are not loaded, unless request is made in transaction.
+     *
+     * @param ids - entity ids
+     * @return    - found entities in no particular order
+     */
+    @NotNull
+    public List<T> findAllById(@NotNull Collection<? extends ID> ids) {
+        if (idColumn == null) {
             throw new RuntimeException("Id column is not specified!");
         }
-        try (Connection connection = DriverManager.getConnection(dataSource.getUrl(), dataSource.getName(), dataSource.getPassword())) {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + name + " WHERE " + idField.getValue1() + " = ?");
-            setField(statement, 1, idField.getValue2(), id);
-            ResultSet resultSet = statement.executeQuery();
-            List<T> list = listEntities(resultSet, noArgumentsConstructor, fields);
-            statement.close();
-            if (list.isEmpty()) {
-                return Optional.empty();
-            } else if (list.size() == 1) {
-                return Optional.of(list.get(0));
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (cache == null || dataSource.isInTransaction()) {
+            return loadAllById(ids);
+        }
+        List<T> entities = new ArrayList<>();
+        List<ID> missing = new ArrayList<>();
+        for (ID id : new LinkedHashSet<>(ids)) {
+            Object[] state = cache.get(id);
+            if (state == null) {
+                missing.add(id);
             } else {
-                throw new RuntimeException("Too many results!");
+                entities.add(fromState(state));
+            }
+        }
+        if (!missing.isEmpty()) {
+            long generation = cache.getGeneration();
+            for (T entity : loadAllById(missing)) {
+                cache.putLoaded(idColumn.getValue(entity), toState(entity), generation);
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Method to get recorder of metrics, e.g. to time services built on repository.
+     *
+     * @return - recorder of data source
+     */
+    @NotNull
+    public MetricsRecorder getMetricsRecorder() {
+        return dataSource.getSettings().getMetricsRecorder();
+    }
+
+    /**
+     * Method to get counters of entity cache.
+     *
+     * @return - statistics or {@literal null} if cache is disabled
+     */
+    @Nullable
+    public CacheStatistics getCacheStatistics() {
+        return cache == null ? null : cache.getStatistics();
+    }
+
+    @NotNull
+    private List<T> loadAllById(@NotNull Collection<? extends ID> ids) {
+        return findAllByQuery(findAllByIdSql, SqlArray.of(idColumn.getType(), ids));
+    }
+
+    /**
+     * Method to find entity by id in database.
+     *
+     * @param id    - entity id
+     * @param timer - timer of operation
+     * @return      - optional of entity
+     */
+    @NotNull
+    private Optional<T> loadById(@NotNull ID id, @NotNull OperationTimer timer) {
+        long startNanos;
+        List<T> list;
+        try (Connection connection = dataSource.getConnection()) {
+            timer.phase(Metric.ACQUIRE_TIME);
+            startNanos = dataSource.startQuery();
+            try (PreparedStatement statement = connection.prepareStatement(findByIdSql)) {
+                idColumn.getType().write(statement, 1, id);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    timer.phase(Metric.EXECUTE_TIME);
+                    list = listEntities(resultSet, metadata);
+                    timer.phase(Metric.MAPPING_TIME);
+                }
             }
         } catch (SQLException e) {
             throw new RuntimeException(e.getMessage());
         }
+        dataSource.recordQuery(findByIdSql, new Object[]{id}, startNanos, list.size());
+        if (list.isEmpty()) {
+            return Optional.empty();
+        } else if (list.size() == 1) {
+            return Optional.of(list.get(0));
+        } else {
+            throw new RuntimeException("Too many results!");
+        }
+    }
+
+    /**
+     * Method to find all entities of T class on executor of asynchronous requests.
+     *
+     * @param sql       - request
+     * @param arguments - arguments
+     * @return          - future of list of entities from sql
+     */
+    @NotNull
+    public CompletableFuture<List<T>> findAllByQueryAsync(@NotNull String sql, @NotNull Object... arguments) {
+        return dataSource.supplyAsync(() -> findAllByQuery(sql, arguments));
+    }
+
+    /**
+     * Method to get any entity by request on executor of asynchronous requests.
+     *
+     * @param clazz     - class of result entity list
+     * @param sql       - request
+     * @param arguments - arguments
+     * @param <K>       - type of entity
+     * @return          - future of list of entities
+     */
+    @NotNull
+    public <K> CompletableFuture<List<K>> findAllByQueryAsync(@NotNull Class<K> clazz, @NotNull String sql, @NotNull Object... arguments) {
+        return dataSource.supplyAsync(() -> findAllByQuery(clazz, sql, arguments));
+    }
+
+    /**
+     * Method to pass any entities to consumer one by one on executor of asynchronous requests.
+     * Consumer is called by one thread at a time.
+     *
+     * @param clazz     - class of result entity
+     * @param sql       - request
+     * @param consumer  - consumer of entities
+     * @param arguments - arguments
+     * @param <K>       - type of entity
+     * @return          - future completed when all entities are consumed
+     */
+    @NotNull
+    public <K> CompletableFuture<Void> forEachAsync(@NotNull Class<K> clazz, @NotNull String sql, @NotNull Consumer<? super K> consumer, @NotNull Object... arguments) {
+        return dataSource.supplyAsync(() -> {
+            forEach(clazz, sql, consumer, arguments);
+            return null;
+        });
+    }
+
+    /**
+     * Method to get all entities from db on executor of asynchronous requests.
+     *
+     * @return - future of list with all entities
+     */
+    @NotNull
+    public CompletableFuture<List<T>> findAllAsync() {
+        return dataSource.supplyAsync(this::findAll);
+    }
+
+    /**
+     * Method to find entity by id on executor of asynchronous requests.
+     *
+     * @param id - entity id
+     * @return   - future of optional of entity
+     */
+    @NotNull
+    public CompletableFuture<Optional<T>> findByIdAsync(@NotNull ID id) {
+        return dataSource.supplyAsync(() -> findById(id));
+    }
+
+    /**
+     * Method to find entities by ids on executor of asynchronous requests.
+     *
+     * @param ids - entity ids
+     * @return    - future of found entities in no particular order
+     */
+    @NotNull
+    public CompletableFuture<List<T>> findAllByIdAsync(@NotNull Collection<? extends ID> ids) {
+        return dataSource.supplyAsync(() -> findAllById(ids));
+    }
+
+    /**
+     * Method to find page of entities ordered by id using keyset pagination.
+     *
+     * @param afterId - id of last entity of previous page or {@literal null} to get first page
+     * @param limit   - maximum count of entities on page
+     * @return        - page with id of its last entity as next cursor
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public Page<T, ID> findPage(@Nullable ID afterId, int limit) {
+        if (idColumn == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        List<EntityColumn<T>> keys = Collections.singletonList(idColumn);
+        List<T> found = findKeysetPage(keys, false, afterId == null ? null : new Object[]{afterId}, limit);
+        return toPage(found, limit, entity -> (ID) idColumn.getValue(entity));
+    }
+
+    /**
+     * Method to find page of entities in custom order using keyset pagination.
+     *
+     * @param order  - order of entities
+     * @param cursor - cursor from previous page or {@literal null} to get first page
+     * @param limit  - maximum count of entities on page
+     * @return       - page with opaque cursor token of its last entity
+     */
+    @NotNull
+    public Page<T, String> findPage(@NotNull PageOrder order, @Nullable String cursor, int limit) {
+        if (idColumn == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        List<EntityColumn<T>> keys = new ArrayList<>();
+        for (String columnName : order.getColumns()) {
+            keys.add(metadata.getColumns().stream()
+                    .filter(column -> column.getName().equalsIgnoreCase(columnName))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown column " + columnName + "!")));
+        }
+        if (!keys.contains(idColumn)) {
+            keys.add(idColumn);
+        }
+        List<T> found = findKeysetPage(keys, order.isDescending(), cursor == null ? null : decodeCursor(keys, cursor), limit);
+        return toPage(found, limit, entity -> encodeCursor(keys, entity));
     }
 
     /**
@@ -253,37 +495,84 @@ public abstract class Repository<T, ID> {
      * @return       - {@literal true} if update affected some rows
      */
     public boolean update(@NotNull T entity) {
-        try (Connection connection = DriverManager.getConnection(dataSource.getUrl(), dataSource.getName(), dataSource.getPassword())) {
-            Set<String> fieldsToUpdate = new HashSet<>(fields.keySet());
-            if (idField != null) {
-                fieldsToUpdate.remove(idField.getValue1());
-            }
-            StringBuilder sql = new StringBuilder("UPDATE ")
-                    .append(name);
-            boolean firstField = true;
-            for (String fieldToUpdate : fieldsToUpdate) {
-                if (!firstField) {
-                    sql.append(", ");
-                } else {
-                    sql.append(" SET ");
+        if (idColumn == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        OperationTimer timer = startTimer("update");
+        long startNanos;
+        int rows;
+        try (Connection connection = dataSource.getConnection()) {
+            timer.phase(Metric.ACQUIRE_TIME);
+            startNanos = dataSource.startQuery();
+            try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+                int index = 1;
+                for (EntityColumn<T> column : updateColumns) {
+                    column.write(statement, index++, entity);
                 }
-                firstField = false;
-                sql.append(fieldToUpdate).append(" = ?");
-            }
-            sql.append(" WHERE ").append(idField.getValue1()).append(" = ?");
-            PreparedStatement statement = connection.prepareStatement(sql.toString());
-            int index = 1;
-            for (String fieldToUpdate : fieldsToUpdate) {
-                InternalField field = fields.get(fieldToUpdate);
-                setField(statement, index++, field, getFieldValue(fieldToUpdate, entity));
+                idColumn.write(statement, index, entity);
+                rows = statement.executeUpdate();
+                timer.phase(Metric.EXECUTE_TIME);
             }
-            setField(statement, index, idField.getValue2(), getFieldValue(idField.getValue1(), entity));
-            int rowsCount = statement.executeUpdate();
-            statement.close();
-            return rowsCount != 0;
+            onWritten(entity, rows != 0);
+            timer.finish(rows);
         } catch (SQLException e) {
             throw new RuntimeException(e.getMessage());
+        } finally {
+            timer.abort();
         }
+        dataSource.recordUpdate(updateSql, argumentsOf(entity, updateColumns, idColumn), startNanos, rows);
+        return rows != 0;
+    }
+
+    /**
+     * Method to remember column values of entity, e.g. right after it was loaded.
+     *
+     * @param entity - entity
+     * @return       - snapshot to pass to {@link #updateChanged(Object, EntitySnapshot)}
+     */
+    @NotNull
+    public EntitySnapshot<T> snapshot(@NotNull T entity) {
+        return new EntitySnapshot<>(toState(entity));
+    }
+
+    /**
+     * Method to update only columns which were changed since snapshot was taken.
+     * Request is not sent at all if nothing was changed, new snapshot should be taken after update.
+     *
+     * @param entity   - updated entity
+     * @param snapshot - snapshot of entity taken before changes
+     * @return         - {@literal true} if some columns were changed and update affected some rows
+     */
+    public boolean updateChanged(@NotNull T entity, @NotNull EntitySnapshot<T> snapshot) {
+        List<EntityColumn<T>> columns = metadata.getColumns();
+        Object[] state = snapshot.getState();
+        List<EntityColumn<T>> changed = new ArrayList<>();
+        for (int i = 0; i < state.length; ++i) {
+            EntityColumn<T> column = columns.get(i);
+            if (column != idColumn && !Objects.equals(state[i], column.getValue(entity))) {
+                changed.add(column);
+            }
+        }
+        return updatePartially(entity, changed);
+    }
+
+    /**
+     * Method to update only specified columns of entity.
+     * Request is not sent at all if no columns are specified.
+     *
+     * @param entity      - updated entity
+     * @param columnNames - names of changed columns
+     * @return            - {@literal true} if some columns were specified and update affected some rows
+     */
+    public boolean updateColumns(@NotNull T entity, @NotNull Collection<String> columnNames) {
+        List<EntityColumn<T>> changed = new ArrayList<>();
+        for (String columnName : columnNames) {
+            changed.add(updateColumns.stream()
+                    .filter(column -> column.getName().equalsIgnoreCase(columnName))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown column " + columnName + "!")));
+        }
+        return updatePartially(entity, changed);
     }
 
     /**
@@ -293,35 +582,29 @@ public abstract class Repository<T, ID> {
      * @return       - {@literal true} if entity was created
      */
     public boolean create(@NotNull T entity) {
-        try (Connection connection = DriverManager.getConnection(dataSource.getUrl(), dataSource.getName(), dataSource.getPassword())) {
-            StringBuilder sql = new StringBuilder("INSERT INTO ").append(name).append(" (");
-            boolean firstField = true;
-            for (String field : fields.keySet()) {
-                if (!firstField) {
-                    sql.append(", ");
+        OperationTimer timer = startTimer("create");
+        long startNanos;
+        int rows;
+        try (Connection connection = dataSource.getConnection()) {
+            timer.phase(Metric.ACQUIRE_TIME);
+            startNanos = dataSource.startQuery();
+            try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                int index = 1;
+                for (EntityColumn<T> column : insertColumns) {
+                    column.write(statement, index++, entity);
                 }
-                firstField = false;
-                sql.append(field);
+                rows = statement.executeUpdate();
+                timer.phase(Metric.EXECUTE_TIME);
             }
-            sql.append(") VALUES (");
-            for (int i = 0; i < fields.size(); ++i) {
-                if (i != 0) {
-                    sql.append(", ");
-                }
-                sql.append("?");
-            }
-            sql.append(")");
-            PreparedStatement statement = connection.prepareStatement(sql.toString());
-            int index = 1;
-            for (Map.Entry<String, InternalField> internalField : fields.entrySet()) {
-                setField(statement, index++, internalField.getValue(), getFieldValue(internalField.getKey(), entity));
-            }
-            int rowCount = statement.executeUpdate();
-            statement.close();
-            return rowCount != 0;
+            onWritten(entity, rows != 0);
+            timer.finish(rows);
         } catch (SQLException e) {
             throw new RuntimeException(e.getMessage());
+        } finally {
+            timer.abort();
         }
+        dataSource.recordUpdate(insertSql, argumentsOf(entity, insertColumns, null), startNanos, rows);
+        return rows != 0;
     }
 
     /**
@@ -331,174 +614,811 @@ public abstract class Repository<T, ID> {
      * @return   - {@literal true} if some rows affected
      */
     public boolean deleteById(ID id) {
-        if (idField == null) {
+        if (idColumn == null) {
             throw new NotImplementedException();
         }
-        try (Connection connection = DriverManager.getConnection(dataSource.getUrl(), dataSource.getName(), dataSource.getPassword())) {
-            PreparedStatement statement = connection.prepareStatement("DELETE FROM " + name + " WHERE " + idField.getValue1() + " = ?");
-            setField(statement, 1, idField.getValue2(), id);
-            int rowsCount = statement.executeUpdate();
-            statement.close();
-            return rowsCount != 0;
+        OperationTimer timer = startTimer("deleteById");
+        long startNanos;
+        int rows;
+        try (Connection connection = dataSource.getConnection()) {
+            timer.phase(Metric.ACQUIRE_TIME);
+            startNanos = dataSource.startQuery();
+            try (PreparedStatement statement = connection.prepareStatement(deleteByIdSql)) {
+                idColumn.getType().write(statement, 1, id);
+                rows = statement.executeUpdate();
+                timer.phase(Metric.EXECUTE_TIME);
+            }
+            invalidate(id);
+            timer.finish(rows);
         } catch (SQLException e) {
             throw new RuntimeException(e.getMessage());
+        } finally {
+            timer.abort();
         }
+        dataSource.recordUpdate(deleteByIdSql, new Object[]{id}, startNanos, rows);
+        return rows != 0;
     }
 
     /**
-     * Method to convert result set to list of entities.
+     * Method to update existing entity in db on executor of asynchronous requests.
      *
-     * @param resultSet              - result set
-     * @param noArgumentsConstructor - constructor
-     * @param fields                 - fields mappings
-     * @param <K>                    - type of result entity
-     * @return                       - list of converted entities
+     * @param entity - updated entity
+     * @return       - future of {@literal true} if update affected some rows
      */
     @NotNull
-    private <K> List<K> listEntities(@NotNull ResultSet resultSet, @NotNull Constructor<K> noArgumentsConstructor, @NotNull Map<String, InternalField> fields) {
-        try {
-            List<K> entities = new LinkedList<>();
-            while (resultSet.next()) {
-                K entity = noArgumentsConstructor.newInstance();
-                for (Map.Entry<String, InternalField> entry : fields.entrySet()) {
-                    String key = entry.getKey();
-                    InternalField field = entry.getValue();
-                    BiFunction<ResultSet, String, Object> extractor = extractors.get(field.getClazz());
-                    if (extractor == null) {
-                        throw new RuntimeException("No extractor!");
+    public CompletableFuture<Boolean> updateAsync(@NotNull T entity) {
+        return dataSource.supplyAsync(() -> update(entity));
+    }
+
+    /**
+     * Method to create entity in db on executor of asynchronous requests.
+     *
+     * @param entity - entity to create
+     * @return       - future of {@literal true} if entity was created
+     */
+    @NotNull
+    public CompletableFuture<Boolean> createAsync(@NotNull T entity) {
+        return dataSource.supplyAsync(() -> create(entity));
+    }
+
+    /**
+     * Method to delete entity on executor of asynchronous requests.
+     *
+     * @param id - entity id to delete
+     * @return   - future of {@literal true} if some rows affected
+     */
+    @NotNull
+    public CompletableFuture<Boolean> deleteByIdAsync(@NotNull ID id) {
+        return dataSource.supplyAsync(() -> deleteById(id));
+    }
+
+    /**
+     * Method to create entities in db with batches of statements in one transaction.
+     *
+     * @param entities - entities to create
+     * @return         - count of created rows for every entity in order of collection,
+     *                   {@link java.sql.Statement#SUCCESS_NO_INFO} if driver rewrote inserts
+     */
+    @NotNull
+    public int[] createAll(@NotNull Collection<? extends T> entities) {
+        int[] result = executeBatch(insertSql, entities, (statement, entity) -> {
+            int index = 1;
+            for (EntityColumn<T> column : insertColumns) {
+                column.write(statement, index++, entity);
+            }
+        });
+        entities.forEach(this::invalidateEntity);
+        return result;
+    }
+
+    /**
+     * Method to update existing entities in db with batches of statements in one transaction.
+     *
+     * @param entities - updated entities
+     * @return         - count of updated rows for every entity in order of collection
+     */
+    @NotNull
+    public int[] updateAll(@NotNull Collection<? extends T> entities) {
+        if (idColumn == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        int[] result = executeBatch(updateSql, entities, (statement, entity) -> {
+            int index = 1;
+            for (EntityColumn<T> column : updateColumns) {
+                column.write(statement, index++, entity);
+            }
+            idColumn.write(statement, index, entity);
+        });
+        entities.forEach(this::invalidateEntity);
+        return result;
+    }
+
+    /**
+     * Method to delete entities with batches of statements in one transaction.
+     *
+     * @param ids - ids of entities to delete
+     * @return    - count of deleted rows for every id in order of collection
+     */
+    @NotNull
+    public int[] deleteAllById(@NotNull Collection<? extends ID> ids) {
+        if (idColumn == null) {
+            throw new NotImplementedException();
+        }
+        int[] result = executeBatch(deleteByIdSql, ids, (statement, id) -> idColumn.getType().write(statement, 1, id));
+        ids.forEach(this::invalidate);
+        return result;
+    }
+
+    /**
+     * Method to insert new entities and update existing ones by primary key.
+     *
+     * @param entities - entities to write
+     * @return         - counts of inserted and updated rows
+     * @see #upsertAll(Collection, UpsertOptions)
+     */
+    @NotNull
+    public UpsertResult upsertAll(@NotNull Collection<? extends T> entities) {
+        return upsertAll(entities, UpsertOptions.DEFAULT);
+    }
+
+    /**
+     * Method to insert new entities and update or keep existing ones with {@code INSERT ... ON CONFLICT} in one transaction.
+     * Entities are sent by multi-row statements of batch size, so there is one round trip per batch.
+     * When existing rows are updated, only the last of entities with the same key is written.
+     * Inserted rows are told from updated ones by absence of their key in snapshot of statement,
+     * {@code xmax} of returned row version could not be used since partitioned tables do not return system columns.
+     * Primary key is conflict target by default, so all its columns should be mapped to entity:
+     * e.g. key of partitioned table includes partition key, so it should be mapped even if it is filled by trigger.
+     *
+     * @param entities - entities to write
+     * @param options  - conflict target and action
+     * @return         - counts of inserted, updated and skipped rows
+     * @throws IllegalArgumentException - if some column of conflict target is not mapped to entity
+     */
+    @NotNull
+    public UpsertResult upsertAll(@NotNull Collection<? extends T> entities, @NotNull UpsertOptions options) {
+        if (idColumn == null && options.getConstraint() == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        if (entities.isEmpty()) {
+            return new UpsertResult(0, 0, 0);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            long startNanos = dataSource.startQuery();
+            String constraint = options.getConstraint();
+            List<EntityColumn<T>> keys = constraint == null
+                    ? findPrimaryKeyColumns(connection)
+                    : findConstraintColumns(connection, constraint);
+            List<EntityColumn<T>> setColumns = new ArrayList<>(insertColumns);
+            setColumns.removeAll(keys);
+            setColumns.remove(idColumn);
+            String conflictAction = options.isIgnoreExisting() || setColumns.isEmpty()
+                    ? "DO NOTHING"
+                    : "DO UPDATE SET " + setColumns.stream().map(c -> c.getName() + " = EXCLUDED." + c.getName()).collect(joining(", "));
+            String keyMatch = keys.stream().map(c -> "t." + c.getName() + " = u." + c.getName()).collect(joining(" AND "));
+            String suffix = " ON CONFLICT " + (constraint == null ? "(" + columnNames(keys, ", ") + ")" : "ON CONSTRAINT " + constraint)
+                    + " " + conflictAction + " RETURNING " + columnNames(keys, ", ")
+                    + ") SELECT NOT EXISTS (SELECT 1 FROM " + name + " t WHERE " + keyMatch + ") FROM upserted u";
+
+            List<T> values = new ArrayList<>(entities);
+            if (!options.isIgnoreExisting()) {
+                // the same row can not be updated twice by one statement
+                Map<List<Object>, T> lastByKey = new LinkedHashMap<>();
+                for (T entity : values) {
+                    List<Object> key = keys.stream().map(column -> column.getValue(entity)).collect(toList());
+                    lastByKey.remove(key);
+                    lastByKey.put(key, entity);
+                }
+                values = new ArrayList<>(lastByKey.values());
+            }
+
+            boolean local = beginLocalTransaction(connection);
+            int chunkSize = Math.max(1, Math.min(dataSource.getSettings().getBatchSize(), MAX_ARGUMENTS / insertColumns.size()));
+            String row = "(" + String.join(", ", Collections.nCopies(insertColumns.size(), "?")) + ")";
+            int inserted = 0;
+            int updated = 0;
+            for (int start = 0; start < values.size(); start += chunkSize) {
+                List<T> chunk = values.subList(start, Math.min(values.size(), start + chunkSize));
+                String sql = "WITH upserted AS (INSERT INTO " + name + " (" + columnNames(insertColumns, ", ") + ") VALUES "
+                        + String.join(", ", Collections.nCopies(chunk.size(), row)) + suffix;
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (T entity : chunk) {
+                        for (EntityColumn<T> column : insertColumns) {
+                            column.write(statement, index++, entity);
+                        }
                     }
-                    Object object = extractor.apply(resultSet, key);
-                    if (field.getSetter() != null) {
-                        field.getSetter().invoke(entity, object);
-                    } else {
-                        Field internalField = field.getField();
-                        boolean isAccessible = internalField.isAccessible();
-                        internalField.setAccessible(true);
-                        internalField.set(entity, object);
-                        internalField.setAccessible(isAccessible);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            if (resultSet.getBoolean(1)) {
+                                inserted++;
+                            } else {
+                                updated++;
+                            }
+                        }
                     }
                 }
-                entities.add(entity);
             }
-            return entities;
-        } catch (SQLException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
+            if (local) {
+                connection.commit();
+            }
+            entities.forEach(this::invalidateEntity);
+            dataSource.recordUpdate("WITH upserted AS (INSERT INTO " + name + " (" + columnNames(insertColumns, ", ") + ") VALUES " + row + suffix, null, startNanos, inserted + updated);
+            return new UpsertResult(inserted, updated, entities.size() - inserted - updated);
+        } catch (SQLException e) {
             throw new RuntimeException(e.getMessage());
         }
     }
 
     /**
-     * Method to retrieve all information about field.
+     * Method to load entities into table with COPY, rows are streamed to database without building whole payload.
      *
-     * @param field  - field
-     * @param fields - fields info storage
-     * @return       - {@literal null} if field is not id
+     * @param entities - entities to load
+     * @return         - count of loaded rows
      */
-    @Nullable
-    private Pair<String, InternalField> computeField(@NotNull Field field, @NotNull Map<String, InternalField> fields) {
-        Column column = field.getAnnotation(Column.class);
-        if (column == null) {
-            column = field.getDeclaredAnnotation(Column.class);
+    public long copyIn(@NotNull Iterable<? extends T> entities) {
+        try (Connection connection = dataSource.getConnection()) {
+            long startNanos = dataSource.startQuery();
+            long copied = CopyWriter.copy(connection, name, insertColumns, entities, dataSource.getSettings().getCopyBufferSize());
+            invalidateAll();
+            dataSource.recordUpdate(CopyWriter.copySql(name, insertColumns), null, startNanos, copied);
+            return copied;
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
         }
-        if (column == null) {
-            return null;
+    }
+
+    /**
+     * Method to load entities with COPY into temporary staging table and merge them into table by primary key in one transaction:
+     * new entities are inserted, existing ones are updated. Keys of entities should be unique.
+     *
+     * @param entities - entities to load
+     * @return         - count of inserted or updated rows
+     * @throws IllegalArgumentException - if some column of primary key is not mapped to entity
+     */
+    public long copyInMerging(@NotNull Iterable<? extends T> entities) {
+        if (idColumn == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            String mergeSql = mergeStagingSql(connection);
+            boolean local = beginLocalTransaction(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(createStagingSql);
+            }
+            long startNanos = dataSource.startQuery();
+            long copied = CopyWriter.copy(connection, stagingName, insertColumns, entities, dataSource.getSettings().getCopyBufferSize());
+            dataSource.recordUpdate(CopyWriter.copySql(stagingName, insertColumns), null, startNanos, copied);
+            long merged;
+            try (Statement statement = connection.createStatement()) {
+                startNanos = dataSource.startQuery();
+                merged = statement.executeUpdate(mergeSql);
+                // staging table is not visible to other connections, so plan of merge is not captured
+                dataSource.recordUpdate(mergeSql, null, startNanos, merged);
+                // outer transaction could merge again before commit drops table
+                statement.execute(dropStagingSql);
+            }
+            if (local) {
+                connection.commit();
+            }
+            invalidateAll();
+            return merged;
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Method to get statement which merges staging table into table by primary key.
+     *
+     * @param connection - connection
+     * @return           - merge statement
+     * @throws SQLException - if catalog could not be read
+     */
+    @NotNull
+    private String mergeStagingSql(@NotNull Connection connection) throws SQLException {
+        String sql = mergeStagingSql;
+        if (sql != null) {
+            return sql;
         }
-        fields.put(column.value(), new InternalField(field.getType(), field, null, null));
-        Id id = field.getAnnotation(Id.class);
+        List<EntityColumn<T>> keys = findPrimaryKeyColumns(connection);
+        List<EntityColumn<T>> setColumns = new ArrayList<>(insertColumns);
+        setColumns.removeAll(keys);
+        String conflictAction = setColumns.isEmpty()
+                ? "DO NOTHING"
+                : "DO UPDATE SET " + setColumns.stream().map(c -> c.getName() + " = EXCLUDED." + c.getName()).collect(joining(", "));
+        sql = "INSERT INTO " + name + " (" + columnNames(insertColumns, ", ") + ") SELECT " + columnNames(insertColumns, ", ") + " FROM " + stagingName
+                + " ON CONFLICT (" + columnNames(keys, ", ") + ") " + conflictAction;
+        mergeStagingSql = sql;
+        return sql;
+    }
+
+    /**
+     * Method to find entity columns of primary key of table.
+     *
+     * @param connection - connection
+     * @return           - columns of primary key
+     * @throws SQLException - if catalog could not be read
+     */
+    @NotNull
+    private List<EntityColumn<T>> findPrimaryKeyColumns(@NotNull Connection connection) throws SQLException {
+        String constraint = primaryKey;
+        if (constraint == null) {
+            try (PreparedStatement statement = connection.prepareStatement(PRIMARY_KEY_SQL)) {
+                statement.setString(1, name);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new IllegalArgumentException("Primary key is not found on " + name + "!");
+                    }
+                    constraint = resultSet.getString(1);
+                }
+            }
+            primaryKey = constraint;
+        }
+        return findConstraintColumns(connection, constraint);
+    }
+
+    /**
+     * Method to find entity columns of unique constraint of table.
+     *
+     * @param connection - connection
+     * @param constraint - constraint name
+     * @return           - columns of constraint
+     * @throws SQLException - if catalog could not be read
+     */
+    @NotNull
+    private List<EntityColumn<T>> findConstraintColumns(@NotNull Connection connection, @NotNull String constraint) throws SQLException {
+        List<EntityColumn<T>> columns = constraintColumns.get(constraint);
+        if (columns != null) {
+            return columns;
+        }
+        columns = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(CONSTRAINT_COLUMNS_SQL)) {
+            statement.setString(1, name);
+            statement.setString(2, constraint);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String columnName = resultSet.getString(1);
+                    columns.add(insertColumns.stream()
+                            .filter(column -> column.getName().equalsIgnoreCase(columnName))
+                            .findFirst()
+                            .orElseThrow(() -> new IllegalArgumentException("Column " + columnName + " of constraint " + constraint + " is not mapped!")));
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Unique constraint " + constraint + " is not found on " + name + "!");
+        }
+        constraintColumns.put(constraint, columns);
+        return columns;
+    }
+
+    /**
+     * Method to update columns of entity with statement built for them.
+     *
+     * @param entity  - updated entity
+     * @param columns - columns to update
+     * @return        - {@literal true} if update affected some rows
+     */
+    private boolean updatePartially(@NotNull T entity, @NotNull List<EntityColumn<T>> columns) {
+        if (idColumn == null) {
+            throw new RuntimeException("Id column is not specified!");
+        }
+        if (columns.isEmpty()) {
+            return false;
+        }
+        String sql = "UPDATE " + name + " SET " + columnNames(columns, " = ?, ") + " = ? WHERE " + idColumn.getName() + " = ?";
+        long startNanos;
+        int rows;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            startNanos = dataSource.startQuery();
+            int index = 1;
+            for (EntityColumn<T> column : columns) {
+                column.write(statement, index++, entity);
+            }
+            idColumn.write(statement, index, entity);
+            rows = statement.executeUpdate();
+            // entity may hold unwritten changes of other columns, so cached state is reloaded from db
+            invalidateEntity(entity);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        dataSource.recordUpdate(sql, argumentsOf(entity, columns, idColumn), startNanos, rows);
+        return rows != 0;
+    }
+
+    /**
+     * Method to get values of columns bound to statement, they are shown in log of slow queries.
+     *
+     * @param entity  - entity
+     * @param columns - columns in order of statement parameters
+     * @param key     - column of last parameter or {@literal null}
+     * @return        - values of columns
+     */
+    @NotNull
+    private Object[] argumentsOf(@NotNull T entity, @NotNull List<EntityColumn<T>> columns, @Nullable EntityColumn<T> key) {
+        Object[] arguments = new Object[columns.size() + (key == null ? 0 : 1)];
+        for (int i = 0; i < columns.size(); ++i) {
+            arguments[i] = columns.get(i).getValue(entity);
+        }
+        if (key != null) {
+            arguments[columns.size()] = key.getValue(entity);
+        }
+        return arguments;
+    }
+
+    /**
+     * Method to refresh cached entity after it was written.
+     *
+     * @param entity  - written entity
+     * @param written - whether some rows were affected
+     */
+    private void onWritten(@NotNull T entity, boolean written) {
+        if (cache == null) {
+            return;
+        }
+        Object id = idColumn.getValue(entity);
         if (id == null) {
-            id = field.getDeclaredAnnotation(Id.class);
+            return;
+        }
+        if (written && !dataSource.isInTransaction()) {
+            cache.put(id, toState(entity));
+        } else {
+            invalidate(id);
         }
-        if (id != null) {
-            return new Pair<>(column.value(), new InternalField(field.getType(), field, null, null));
+    }
+
+    /**
+     * Method to remove entity from cache by its id.
+     *
+     * @param entity - entity
+     */
+    private void invalidateEntity(@NotNull T entity) {
+        if (cache != null) {
+            Object id = idColumn.getValue(entity);
+            if (id != null) {
+                invalidate(id);
+            }
         }
-        return null;
     }
 
     /**
-     * Method to get information about class.
+     * Method to remove entity from cache, inside transaction it is removed again when transaction ends,
+     * because other threads could load its previous state before commit.
      *
-     * @param fields - field info storage
-     * @param clazz  - class
-     * @param <K>    - type of class
-     * @return       - constructor with id field info
+     * @param id - entity id
+     */
+    private void invalidate(@NotNull Object id) {
+        if (cache == null) {
+            return;
+        }
+        cache.invalidate(id);
+        Transaction transaction = dataSource.getCurrentTransaction();
+        if (transaction != null) {
+            transaction.afterCompletion(() -> cache.invalidate(id));
+        }
+    }
+
+    /**
+     * Method to remove all entities from cache.
+     */
+    private void invalidateAll() {
+        if (cache == null) {
+            return;
+        }
+        cache.invalidateAll();
+        Transaction transaction = dataSource.getCurrentTransaction();
+        if (transaction != null) {
+            transaction.afterCompletion(cache::invalidateAll);
+        }
+    }
+
+    /**
+     * Method to copy column values of entity.
+     *
+     * @param entity - entity
+     * @return       - values in order of metadata columns
      */
     @NotNull
-    private <K> Pair<Constructor<K>, Pair<String, InternalField>> getInformationAboutClass(@NotNull Map<String, InternalField> fields, @NotNull Class<K> clazz) {
-        Field[] entityFields = clazz.getFields();
-        Field[] declaredEntityFields = clazz.getDeclaredFields();
+    private Object[] toState(@NotNull T entity) {
+        List<EntityColumn<T>> columns = metadata.getColumns();
+        Object[] state = new Object[columns.size()];
+        for (int i = 0; i < state.length; ++i) {
+            state[i] = columns.get(i).getValue(entity);
+        }
+        return state;
+    }
 
-        Pair<String, InternalField> idField = null;
-        for (Field field : entityFields) {
-            Pair<String, InternalField> tmp = computeField(field, fields);
-            if (idField == null) {
-                idField = tmp;
+    /**
+     * Method to create entity from column values.
+     *
+     * @param state - values in order of metadata columns
+     * @return      - new entity
+     */
+    @NotNull
+    private T fromState(@NotNull Object[] state) {
+        List<EntityColumn<T>> columns = metadata.getColumns();
+        T entity = metadata.newInstance();
+        for (int i = 0; i < state.length; ++i) {
+            columns.get(i).setValue(entity, state[i]);
+        }
+        return entity;
+    }
+
+    /**
+     * Method to execute statement for every value with batches of configured size.
+     *
+     * @param sql    - statement
+     * @param values - values to bind
+     * @param binder - callback to bind value to statement
+     * @param <V>    - type of value
+     * @return       - update counts in order of values
+     */
+    @NotNull
+    private <V> int[] executeBatch(@NotNull String sql, @NotNull Collection<? extends V> values, @NotNull StatementBinder<V> binder) {
+        int[] result = new int[values.size()];
+        if (values.isEmpty()) {
+            return result;
+        }
+        int batchSize = dataSource.getSettings().getBatchSize();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            long startNanos = dataSource.startQuery();
+            boolean local = beginLocalTransaction(connection);
+            int executed = 0;
+            int pending = 0;
+            for (V value : values) {
+                binder.bind(statement, value);
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    executed = flush(statement, result, executed);
+                    pending = 0;
+                }
+            }
+            if (pending != 0) {
+                flush(statement, result, executed);
             }
+            if (local) {
+                connection.commit();
+            }
+            dataSource.recordUpdate(sql, null, startNanos, values.size());
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Method to start transaction unless connection already belongs to transaction scope.
+     *
+     * @param connection - connection
+     * @return           - {@literal true} if transaction was started and should be committed by caller
+     * @throws SQLException - if auto-commit could not be switched
+     */
+    static boolean beginLocalTransaction(@NotNull Connection connection) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            return false;
+        }
+        connection.setAutoCommit(false);
+        return true;
+    }
+
+    /**
+     * Method to execute pending batch.
+     *
+     * @param statement - statement with batch
+     * @param result    - update counts of all values
+     * @param offset    - count of already executed values
+     * @return          - count of executed values
+     * @throws SQLException - if batch failed
+     */
+    private static int flush(@NotNull PreparedStatement statement, @NotNull int[] result, int offset) throws SQLException {
+        int[] counts = statement.executeBatch();
+        System.arraycopy(counts, 0, result, offset, counts.length);
+        return offset + counts.length;
+    }
+
+    /**
+     * Method to find entities following keys of previous page, one extra entity is requested to know whether next page exists.
+     *
+     * @param keys       - columns of order
+     * @param descending - direction of order
+     * @param after      - key values of last entity of previous page or {@literal null}
+     * @param limit      - maximum count of entities on page
+     * @return           - up to limit + 1 entities
+     */
+    @NotNull
+    private List<T> findKeysetPage(@NotNull List<EntityColumn<T>> keys, boolean descending, @Nullable Object[] after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit should be positive!");
+        }
+        StringBuilder sql = new StringBuilder(findAllSql);
+        List<Object> arguments = new ArrayList<>();
+        if (after != null) {
+            sql.append(" WHERE (").append(columnNames(keys, ", ")).append(descending ? ") < (" : ") > (")
+                    .append(String.join(", ", Collections.nCopies(keys.size(), "?"))).append(")");
+            arguments.addAll(Arrays.asList(after));
+        }
+        sql.append(" ORDER BY ").append(columnNames(keys, descending ? " DESC, " : ", ")).append(descending ? " DESC" : "").append(" LIMIT ?");
+        arguments.add(limit + 1L);
+        return findAllByQuery(sql.toString(), arguments.toArray());
+    }
+
+    /**
+     * Method to cut extra entity off and make cursor of next page.
+     *
+     * @param found    - found entities
+     * @param limit    - maximum count of entities on page
+     * @param cursorOf - function to make cursor of last entity
+     * @param <C>      - type of cursor
+     * @return         - page
+     */
+    @NotNull
+    private static <T, C> Page<T, C> toPage(@NotNull List<T> found, int limit, @NotNull Function<T, C> cursorOf) {
+        if (found.size() <= limit) {
+            return new Page<>(found, null);
         }
-        for (Field field : declaredEntityFields) {
-            Pair<String, InternalField> tmp = computeField(field, fields);
-            if (idField == null) {
-                idField = tmp;
+        List<T> content = new ArrayList<>(found.subList(0, limit));
+        return new Page<>(content, cursorOf.apply(content.get(limit - 1)));
+    }
+
+    /**
+     * Method to encode key values of entity into cursor token.
+     *
+     * @param keys   - columns of order
+     * @param entity - last entity of page
+     * @return       - cursor token
+     */
+    @NotNull
+    private static <T> String encodeCursor(@NotNull List<EntityColumn<T>> keys, @NotNull T entity) {
+        StringBuilder token = new StringBuilder();
+        for (EntityColumn<T> key : keys) {
+            Object value = key.getValue(entity);
+            if (value == null) {
+                throw new RuntimeException("Column " + key.getName() + " of page order is null!");
             }
+            if (token.length() != 0) {
+                token.append(CURSOR_DELIMITER);
+            }
+            token.append(key.getType().format(value));
         }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
 
-        Constructor<K> noArgumentConstructor;
+    /**
+     * Method to decode key values from cursor token.
+     *
+     * @param keys   - columns of order
+     * @param cursor - cursor token
+     * @return       - key values
+     */
+    @NotNull
+    private static <T> Object[] decodeCursor(@NotNull List<EntityColumn<T>> keys, @NotNull String cursor) {
         try {
-            noArgumentConstructor = clazz.getConstructor();
-            if (noArgumentConstructor == null) {
-                noArgumentConstructor = clazz.getDeclaredConstructor();
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(String.valueOf(CURSOR_DELIMITER), -1);
+            if (parts.length != keys.size()) {
+                throw new IllegalArgumentException("Malformed page cursor!");
             }
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException("No constructor without arguments!");
+            Object[] values = new Object[parts.length];
+            for (int i = 0; i < parts.length; ++i) {
+                values[i] = keys.get(i).getType().parse(parts[i]);
+            }
+            return values;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed page cursor!");
         }
-        return new Pair<>(noArgumentConstructor, idField);
     }
 
     /**
-     * Interface of method accepting three arguments.
+     * Method to execute query and convert its result to entities.
      *
-     * @param <T1> - first argument type
-     * @param <T2> - second argument type
-     * @param <T3> - third argument type
+     * @param metadata  - metadata of result entity
+     * @param sql       - request
+     * @param arguments - arguments
+     * @param <K>       - type of result entity
+     * @return          - list of entities
      */
-    private interface ThreeConsumer<T1, T2, T3> {
-        void accept(@NotNull T1 v1, @NotNull T2 v2, @NotNull T3 v3);
+    @NotNull
+    private <K> List<K> findAllByQuery(@NotNull EntityMetadata<K> metadata, @NotNull String sql, @NotNull Object... arguments) {
+        OperationTimer timer = startTimer("findAllByQuery");
+        long startNanos;
+        List<K> entities;
+        try (Connection connection = dataSource.getConnection()) {
+            timer.phase(Metric.ACQUIRE_TIME);
+            startNanos = dataSource.startQuery();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                setArguments(statement, arguments);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    timer.phase(Metric.EXECUTE_TIME);
+                    entities = listEntities(resultSet, metadata);
+                    timer.phase(Metric.MAPPING_TIME);
+                    timer.finish(entities.size());
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage());
+        } finally {
+            timer.abort();
+        }
+        dataSource.recordQuery(sql, arguments, startNanos, entities.size());
+        return entities;
     }
 
     /**
-     * Method to get value from field.
+     * Method to open cursor and wrap it into stream.
      *
-     * @param columnName - column name
-     * @param object     - object to get value from
-     * @return           - value of field by column name
+     * @param metadata  - metadata of result entity
+     * @param sql       - request
+     * @param arguments - arguments
+     * @param <K>       - type of result entity
+     * @return          - stream closing cursor on close
      */
     @NotNull
-    private Object getFieldValue(@NotNull String columnName, @NotNull Object object) {
+    private <K> Stream<K> stream(@NotNull EntityMetadata<K> metadata, @NotNull String sql, @NotNull Object... arguments) {
         try {
-            InternalField internalField = fields.get(columnName);
-            Field field = internalField.getField();
-            boolean isAccessible = field.isAccessible();
-            field.setAccessible(true);
-            Object result = field.get(object);
-            field.setAccessible(isAccessible);
-            return result;
-        } catch (IllegalAccessException e) {
+            EntityCursor<K> cursor = EntityCursor.open(
+                    dataSource.getConnection(),
+                    metadata,
+                    sql,
+                    dataSource.getSettings().getFetchSize(),
+                    statement -> setArguments(statement, arguments),
+                    (startNanos, rows) -> dataSource.recordQuery(sql, arguments, startNanos, rows)
+            );
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException e) {
             throw new RuntimeException(e.getMessage());
         }
     }
 
     /**
-     * Method to set up argument for statement.
+     * Method to convert result set to list of entities.
      *
-     * @param statement     - statement
-     * @param index         - index of argument
-     * @param internalField - field
-     * @param value         - argument
+     * @param resultSet - result set
+     * @param metadata  - metadata of result entity
+     * @param <K>       - type of result entity
+     * @return          - list of converted entities
+     * @throws SQLException - if result set could not be read
      */
-    private void setField(@NotNull PreparedStatement statement, int index, @NotNull InternalField internalField, @NotNull Object value) {
-        Class clazz = internalField.getClazz();
-        ThreeConsumer<PreparedStatement, Integer, Object> setter = setters.get(clazz);
-        if (setter == null) {
-            throw new RuntimeException("Setter not specified!");
+    @NotNull
+    static <K> List<K> listEntities(@NotNull ResultSet resultSet, @NotNull EntityMetadata<K> metadata) throws SQLException {
+        RowMapper<K> mapper = RowMapper.of(metadata, resultSet);
+        List<K> entities = new ArrayList<>();
+        while (resultSet.next()) {
+            entities.add(mapper.map(resultSet));
+        }
+        return entities;
+    }
+
+    /**
+     * Method to set up arguments of statement.
+     *
+     * @param statement - statement
+     * @param arguments - arguments, {@literal null} is bound as NULL of unknown type
+     * @throws SQLException - if some argument could not be set
+     */
+    static void setArguments(@NotNull PreparedStatement statement, @NotNull Object... arguments) throws SQLException {
+        int index = 1;
+        for (Object argument : arguments) {
+            if (argument == null) {
+                statement.setNull(index++, Types.NULL);
+                continue;
+            }
+            if (argument instanceof SqlArray) {
+                ((SqlArray) argument).write(statement, index++);
+                continue;
+            }
+            ColumnType type = ColumnType.of(argument.getClass());
+            if (type == null) {
+                throw new RuntimeException("Setter not specified");
+            }
+            type.write(statement, index++, argument);
         }
-        setter.accept(statement, index, value);
+    }
+
+    @NotNull
+    private OperationTimer startTimer(@NotNull String operation) {
+        return OperationTimer.start(dataSource.getSettings().getMetricsRecorder(), name, operation);
+    }
+
+    /**
+     * Method to join column names.
+     *
+     * @param columns   - columns
+     * @param delimiter - delimiter
+     * @return          - joined names
+     */
+    @NotNull
+    private static String columnNames(@NotNull List<? extends EntityColumn<?>> columns, @NotNull String delimiter) {
+        return columns.stream().map(column -> column.getName()).collect(joining(delimiter));
+    }
+
+    /**
+     * Callback to bind value to statement.
+     *
+     * @param <V> - type of value
+     */
+    private interface StatementBinder<V> {
+        void bind(@NotNull PreparedStatement statement, @NotNull V value) throws SQLException;
     }
 }
@@ -0,0 +1,72 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Text file which is rotated when it grows over maximum size.
+ * Rotated files get suffix {@code .1} (most recent) up to {@code .N}, the oldest one is deleted.
+ */
+final class RollingFile {
+    @NotNull
+    private final Path file;
+    private final long maximumSize;
+    private final int maximumCount;
+
+    RollingFile(@NotNull Path file, long maximumSize, int maximumCount) {
+        if (maximumSize <= 0 || maximumCount < 0) {
+            throw new IllegalArgumentException("File size should be positive and file count should not be negative!");
+        }
+        this.file = file;
+        this.maximumSize = maximumSize;
+        this.maximumCount = maximumCount;
+    }
+
+    /**
+     * Method to append text, file is rotated before if text would not fit into it.
+     *
+     * @param text - text
+     * @throws IOException - if file could not be written or rotated
+     */
+    synchronized void append(@NotNull String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (Files.exists(file) && Files.size(file) > 0 && Files.size(file) + bytes.length > maximumSize) {
+            rotate();
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(file, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Method to shift rotated files by one and move current file to first of them.
+     *
+     * @throws IOException - if some file could not be moved
+     */
+    private void rotate() throws IOException {
+        if (maximumCount == 0) {
+            Files.delete(file);
+            return;
+        }
+        Files.deleteIfExists(rotated(maximumCount));
+        for (int i = maximumCount - 1; i >= 1; --i) {
+            if (Files.exists(rotated(i))) {
+                Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @NotNull
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,74 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Mapper of result set rows to entities, column indexes are resolved once per result set.
+ *
+ * @param <K> - type of entity
+ */
+final class RowMapper<K> {
+    @NotNull
+    private final EntityMetadata<K> metadata;
+    @NotNull
+    private final EntityColumn<K>[] columns;
+    @NotNull
+    private final int[] indexes;
+
+    @SuppressWarnings("unchecked")
+    private RowMapper(@NotNull EntityMetadata<K> metadata, @NotNull ResultSetMetaData resultSetMetaData) throws SQLException {
+        this.metadata = metadata;
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = resultSetMetaData.getColumnCount(); i > 0; --i) {
+            labels.put(resultSetMetaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        List<EntityColumn<K>> entityColumns = metadata.getColumns();
+        this.columns = (EntityColumn<K>[]) entityColumns.toArray(new EntityColumn<?>[0]);
+        this.indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            Integer index = labels.get(columns[i].getName().toLowerCase(Locale.ROOT));
+            if (index == null) {
+                throw new SQLException("The column name " + columns[i].getName() + " was not found in this ResultSet.");
+            }
+            indexes[i] = index;
+        }
+    }
+
+    /**
+     * Method to create mapper for result set.
+     *
+     * @param metadata  - entity metadata
+     * @param resultSet - result set
+     * @param <K>       - type of entity
+     * @return          - mapper
+     * @throws SQLException - if some column of entity is absent in result set
+     */
+    @NotNull
+    static <K> RowMapper<K> of(@NotNull EntityMetadata<K> metadata, @NotNull ResultSet resultSet) throws SQLException {
+        return new RowMapper<>(metadata, resultSet.getMetaData());
+    }
+
+    /**
+     * Method to convert current row to entity.
+     *
+     * @param resultSet - result set positioned on row
+     * @return          - entity
+     * @throws SQLException - if some column could not be read
+     */
+    @NotNull
+    K map(@NotNull ResultSet resultSet) throws SQLException {
+        K entity = metadata.newInstance();
+        for (int i = 0; i < columns.length; ++i) {
+            columns[i].read(resultSet, indexes[i], entity);
+        }
+        return entity;
+    }
+}
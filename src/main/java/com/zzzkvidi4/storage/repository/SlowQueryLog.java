@@ -0,0 +1,193 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Log of queries which took longer than threshold. Every slow query is written to logger,
+ * plans of sampled ones are captured by {@code EXPLAIN} on executor of asynchronous requests and appended to rolling file.
+ * Statements executed for many values (batches, COPY) are logged without arguments and plan.
+ */
+final class SlowQueryLog {
+    @NotNull
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+    /**
+     * Count of array elements written to log, rest of them is only counted.
+     */
+    private static final int MAX_LOGGED_ELEMENTS = 10;
+    /**
+     * Quoted literal of plan, bound arguments are shown as such literals in plans.
+     */
+    @NotNull
+    private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    @NotNull
+    private final SlowQuerySettings settings;
+    private final long thresholdNanos;
+    @NotNull
+    private final RollingFile planFile;
+
+    SlowQueryLog(@NotNull SlowQuerySettings settings) {
+        if (settings.getThresholdMillis() < 0) {
+            throw new IllegalArgumentException("Slow query threshold should not be negative!");
+        }
+        if (settings.getExplainSampleRate() < 0 || settings.getExplainSampleRate() > 1) {
+            throw new IllegalArgumentException("Explain sample rate should be from 0 to 1!");
+        }
+        this.settings = settings;
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(settings.getThresholdMillis());
+        planFile = new RollingFile(settings.getPlanFile(), settings.getMaximumFileSize(), settings.getMaximumFileCount());
+    }
+
+    /**
+     * Method to log query if it took longer than threshold.
+     *
+     * @param dataSource - data source to capture plan with
+     * @param sql        - request
+     * @param arguments  - arguments or {@literal null} if request was executed for many values, its plan is not captured then
+     * @param modifying  - whether request modifies data, it is not executed once more by {@code ANALYZE} then
+     * @param nanos      - duration of query
+     * @param rows       - count of returned or affected rows
+     */
+    void record(@NotNull DataSource dataSource, @NotNull String sql, @Nullable Object[] arguments, boolean modifying, long nanos, long rows) {
+        if (nanos < thresholdNanos) {
+            return;
+        }
+        String entry = "Slow query took " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms and processed " + rows + " rows\n"
+                + "SQL: " + sql + "\n"
+                + "Arguments: " + (arguments == null ? "batch" : formatArguments(arguments)) + "\n";
+        LOGGER.warning(entry);
+        if (arguments != null && ThreadLocalRandom.current().nextDouble() < settings.getExplainSampleRate()) {
+            dataSource.supplyAsync(() -> capturePlan(dataSource, sql, arguments, settings.isExplainAnalyze() && !modifying, entry))
+                    .exceptionally(e -> {
+                        LOGGER.log(Level.WARNING, "Plan of slow query was not captured: " + e.getMessage());
+                        return null;
+                    });
+        }
+    }
+
+    /**
+     * Method to run {@code EXPLAIN} of query and append plan to file.
+     * Query is explained in transaction which is rolled back. Modifying statements are not analyzed,
+     * since their execution would lock rows and fire triggers once more.
+     *
+     * @param dataSource - data source
+     * @param sql        - request
+     * @param arguments  - arguments
+     * @param analyze    - whether query is executed with {@code ANALYZE, BUFFERS}
+     * @param entry      - log entry of query
+     * @return           - nothing
+     */
+    private Void capturePlan(@NotNull DataSource dataSource, @NotNull String sql, @NotNull Object[] arguments, boolean analyze, @NotNull String entry) {
+        // possible only with executor running requests on calling thread, plan is not worth breaking its transaction
+        if (dataSource.isInTransaction()) {
+            return null;
+        }
+        String explain = analyze ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ";
+        StringBuilder plan = new StringBuilder(Instant.now().toString()).append(' ').append(entry).append("Plan:\n");
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(explain + sql)) {
+                if (settings.getExplainTimeoutSeconds() > 0) {
+                    statement.setQueryTimeout(settings.getExplainTimeoutSeconds());
+                }
+                Repository.setArguments(statement, arguments);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        plan.append(redactPlanLine(resultSet.getString(1))).append('\n');
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            planFile.append(plan.append('\n').toString());
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Method to hide literals of plan line unless arguments are logged as is.
+     * Literals of request text are hidden too, since they could not be told apart from arguments.
+     *
+     * @param line - line of plan
+     * @return     - line with literals replaced by {@code '?'}
+     */
+    @NotNull
+    private String redactPlanLine(@NotNull String line) {
+        return settings.getParameterRedaction() == ParameterRedaction.NONE ? line : LITERAL.matcher(line).replaceAll("'?'");
+    }
+
+    /**
+     * Method to format arguments hiding them as configured.
+     *
+     * @param arguments - arguments
+     * @return          - text of arguments
+     */
+    @NotNull
+    private String formatArguments(@NotNull Object[] arguments) {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < arguments.length; ++i) {
+            text.append(i == 0 ? "" : ", ");
+            Object argument = arguments[i];
+            if (argument == null) {
+                text.append("NULL");
+            } else if (argument instanceof SqlArray) {
+                SqlArray array = (SqlArray) argument;
+                text.append(formatArray(array.getElementType(), array.getElements()));
+            } else {
+                ColumnType type = ColumnType.of(argument.getClass());
+                text.append(type == null ? argument.getClass().getSimpleName() : formatValue(type, argument));
+            }
+        }
+        return text.append(']').toString();
+    }
+
+    @NotNull
+    private String formatArray(@NotNull ColumnType type, @NotNull Collection<?> elements) {
+        if (isRedacted(type)) {
+            return type.getSqlName() + "[" + elements.size() + "]";
+        }
+        String shown = elements.stream()
+                .limit(MAX_LOGGED_ELEMENTS)
+                .map(element -> element == null ? "NULL" : formatValue(type, element))
+                .collect(joining(", ", "{", ""));
+        return shown + (elements.size() > MAX_LOGGED_ELEMENTS ? ", ... " + elements.size() + " elements}" : "}");
+    }
+
+    @NotNull
+    private String formatValue(@NotNull ColumnType type, @NotNull Object value) {
+        if (isRedacted(type)) {
+            return "<" + type.getSqlName() + ">";
+        }
+        return type == ColumnType.STRING ? "'" + type.format(value) + "'" : type.format(value);
+    }
+
+    private boolean isRedacted(@NotNull ColumnType type) {
+        switch (settings.getParameterRedaction()) {
+            case NONE:
+                return false;
+            case TEXT:
+                return type == ColumnType.STRING;
+            default:
+                return true;
+        }
+    }
+}
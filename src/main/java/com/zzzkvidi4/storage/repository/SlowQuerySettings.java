@@ -0,0 +1,62 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Settings of log of queries of repositories which took longer than threshold.
+ */
+@Getter
+@Builder
+public final class SlowQuerySettings {
+    @NotNull
+    public static final SlowQuerySettings DEFAULT = builder().build();
+
+    /**
+     * Query which took at least this time (including reading of rows) is logged, stream is measured until it is closed.
+     */
+    @Builder.Default
+    private final long thresholdMillis = 1000;
+    /**
+     * Way to hide statement arguments in log. Unless arguments are logged as is, all quoted literals of captured plans are hidden.
+     */
+    @NotNull
+    @Builder.Default
+    private final ParameterRedaction parameterRedaction = ParameterRedaction.ALL;
+    /**
+     * Share of slow queries which plan is captured by running {@code EXPLAIN} once more, from 0 to 1.
+     */
+    @Builder.Default
+    private final double explainSampleRate = 0.1;
+    /**
+     * Whether plan is captured with {@code ANALYZE, BUFFERS}, query is executed once more then in transaction which is rolled back.
+     * Modifying statements of repositories are always explained without it.
+     */
+    @Builder.Default
+    private final boolean explainAnalyze = true;
+    /**
+     * Timeout of capture of plan, non-positive value disables it.
+     */
+    @Builder.Default
+    private final int explainTimeoutSeconds = 60;
+    /**
+     * File which captured plans are appended to.
+     */
+    @NotNull
+    @Builder.Default
+    private final Path planFile = Paths.get("slow-query-plans.log");
+    /**
+     * Size in bytes after which plan file is rotated.
+     */
+    @Builder.Default
+    private final long maximumFileSize = 10 * 1024 * 1024L;
+    /**
+     * Count of rotated plan files kept besides current one.
+     */
+    @Builder.Default
+    private final int maximumFileCount = 5;
+}
@@ -0,0 +1,54 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Statement argument bound as array, e.g. for {@code column = ANY (?)}.
+ * Statement text does not depend on count of elements, so one prepared statement serves any count of values.
+ */
+@Getter
+public final class SqlArray {
+    @NotNull
+    private final ColumnType elementType;
+    @NotNull
+    private final Collection<?> elements;
+
+    private SqlArray(@NotNull ColumnType elementType, @NotNull Collection<?> elements) {
+        this.elementType = elementType;
+        this.elements = elements;
+    }
+
+    /**
+     * Method to create array argument.
+     *
+     * @param elementType - type of elements
+     * @param elements    - elements, may contain {@literal null}
+     * @return            - array argument
+     */
+    @NotNull
+    public static SqlArray of(@NotNull ColumnType elementType, @NotNull Collection<?> elements) {
+        return new SqlArray(elementType, elements);
+    }
+
+    /**
+     * Method to set up statement argument. Elements are sent as text of element type,
+     * so values are interpreted by database the same way as single arguments and COPY rows.
+     *
+     * @param statement - statement
+     * @param index     - argument index
+     * @throws SQLException - if array could not be created
+     */
+    void write(@NotNull PreparedStatement statement, int index) throws SQLException {
+        String[] texts = elements.stream()
+                .map(element -> element == null ? null : elementType.format(element))
+                .toArray(String[]::new);
+        Array array = statement.getConnection().createArrayOf(elementType.getSqlName(), texts);
+        statement.setArray(index, array);
+    }
+}
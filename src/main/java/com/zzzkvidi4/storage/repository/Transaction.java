@@ -0,0 +1,159 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transaction bound to thread, all requests of repositories made by this thread share its connection.
+ */
+public final class Transaction {
+    @NotNull
+    private final PooledConnection pooledConnection;
+    /**
+     * Handle which owns pooled connection during transaction.
+     */
+    @NotNull
+    private final Connection connection;
+    @Getter
+    @NotNull
+    private final TransactionOptions options;
+    @Getter
+    private boolean rollbackOnly = false;
+    /**
+     * Whether transaction was marked as rollback-only by failed scope which joined it.
+     */
+    @Getter
+    private boolean failedInJoinedScope = false;
+    /**
+     * Callbacks run after transaction ends.
+     */
+    @NotNull
+    private final List<Runnable> completionCallbacks = new ArrayList<>();
+
+    private Transaction(@NotNull PooledConnection pooledConnection, @NotNull Connection connection, @NotNull TransactionOptions options) {
+        this.pooledConnection = pooledConnection;
+        this.connection = connection;
+        this.options = options;
+    }
+
+    /**
+     * Method to start transaction on pooled connection.
+     * Options are set by {@code SET TRANSACTION}, so they expire with transaction and need not be restored.
+     *
+     * @param pooledConnection - connection taken from pool, it is returned to pool when transaction ends
+     * @param options          - options of transaction
+     * @return                 - started transaction
+     * @throws SQLException - if transaction could not be started, connection is returned to pool in this case
+     */
+    @NotNull
+    static Transaction begin(@NotNull PooledConnection pooledConnection, @NotNull TransactionOptions options) throws SQLException {
+        Connection connection = pooledConnection.borrow();
+        try {
+            connection.setAutoCommit(false);
+            String modes = getTransactionModes(options);
+            if (!modes.isEmpty()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET TRANSACTION " + modes);
+                }
+            }
+            return new Transaction(pooledConnection, connection, options);
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Method to get handle of transaction connection, closing of handle does not end transaction.
+     *
+     * @return - connection handle
+     */
+    @NotNull
+    public Connection getConnection() {
+        return pooledConnection.share();
+    }
+
+    /**
+     * Method to mark transaction to be rolled back instead of commit when its scope ends.
+     */
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    /**
+     * Method to mark transaction to be rolled back since scope which joined it failed.
+     */
+    void setFailedInJoinedScope() {
+        rollbackOnly = true;
+        failedInJoinedScope = true;
+    }
+
+    /**
+     * Method to register callback run after transaction is committed or rolled back.
+     *
+     * @param callback - callback
+     */
+    public void afterCompletion(@NotNull Runnable callback) {
+        completionCallbacks.add(callback);
+    }
+
+    /**
+     * Method to commit or roll back transaction, restore options of connection and return it to pool.
+     *
+     * @param commit - {@literal true} to commit transaction
+     * @throws SQLException - if transaction could not be ended, connection is returned to pool anyway
+     */
+    void end(boolean commit) throws SQLException {
+        try {
+            if (commit) {
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+            connection.setAutoCommit(true);
+        } finally {
+            connection.close();
+            completionCallbacks.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Method to convert options to modes of {@code SET TRANSACTION} statement.
+     *
+     * @param options - options of transaction
+     * @return        - modes separated by comma or empty string
+     */
+    @NotNull
+    private static String getTransactionModes(@NotNull TransactionOptions options) {
+        List<String> modes = new ArrayList<>();
+        Integer isolation = options.getIsolation();
+        if (isolation != null) {
+            switch (isolation) {
+                case Connection.TRANSACTION_READ_UNCOMMITTED:
+                    modes.add("ISOLATION LEVEL READ UNCOMMITTED");
+                    break;
+                case Connection.TRANSACTION_READ_COMMITTED:
+                    modes.add("ISOLATION LEVEL READ COMMITTED");
+                    break;
+                case Connection.TRANSACTION_REPEATABLE_READ:
+                    modes.add("ISOLATION LEVEL REPEATABLE READ");
+                    break;
+                case Connection.TRANSACTION_SERIALIZABLE:
+                    modes.add("ISOLATION LEVEL SERIALIZABLE");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown isolation level " + isolation + "!");
+            }
+        }
+        if (options.isReadOnly()) {
+            modes.add("READ ONLY");
+        }
+        return String.join(", ", modes);
+    }
+}
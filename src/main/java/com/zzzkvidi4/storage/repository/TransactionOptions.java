@@ -0,0 +1,39 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.util.function.Function;
+
+/**
+ * Options of transaction started by {@link DataSource#inTransaction(TransactionOptions, Function)}.
+ */
+@Getter
+@Builder
+public final class TransactionOptions {
+    @NotNull
+    public static final TransactionOptions DEFAULT = builder().build();
+    /**
+     * Options of transaction reading one consistent snapshot of database, e.g. for reports.
+     */
+    @NotNull
+    public static final TransactionOptions READ_ONLY_SNAPSHOT = builder()
+            .readOnly(true)
+            .isolation(Connection.TRANSACTION_REPEATABLE_READ)
+            .build();
+
+    /**
+     * Whether database should reject writes in transaction.
+     */
+    @Builder.Default
+    private final boolean readOnly = false;
+    /**
+     * Isolation level, one of {@code Connection.TRANSACTION_*} constants, {@literal null} for default level of database.
+     */
+    @Nullable
+    @Builder.Default
+    private final Integer isolation = null;
+}
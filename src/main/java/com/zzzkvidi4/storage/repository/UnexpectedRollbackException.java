@@ -0,0 +1,15 @@
+package com.zzzkvidi4.storage.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Exception thrown when transaction scope returned normally, but transaction was rolled back
+ * since scope joined inside it failed.
+ */
+public final class UnexpectedRollbackException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UnexpectedRollbackException(@NotNull String message) {
+        super(message);
+    }
+}
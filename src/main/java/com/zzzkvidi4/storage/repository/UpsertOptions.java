@@ -0,0 +1,28 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Options of {@link Repository#upsertAll(java.util.Collection, UpsertOptions)}.
+ */
+@Getter
+@Builder
+public final class UpsertOptions {
+    @NotNull
+    public static final UpsertOptions DEFAULT = builder().build();
+
+    /**
+     * Name of unique constraint which defines conflicting rows, {@literal null} to use id column.
+     */
+    @Nullable
+    @Builder.Default
+    private final String constraint = null;
+    /**
+     * Whether existing rows are kept as is ({@code DO NOTHING}) instead of being updated.
+     */
+    @Builder.Default
+    private final boolean ignoreExisting = false;
+}
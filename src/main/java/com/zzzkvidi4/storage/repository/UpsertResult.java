@@ -0,0 +1,26 @@
+package com.zzzkvidi4.storage.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Counts of rows written by {@link Repository#upsertAll(java.util.Collection, UpsertOptions)}.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class UpsertResult {
+    /**
+     * Rows which did not exist.
+     */
+    private final int inserted;
+    /**
+     * Existing rows which were updated.
+     */
+    private final int updated;
+    /**
+     * Entities which were not written: existing rows kept as is and duplicates replaced by later entities.
+     */
+    private final int skipped;
+}
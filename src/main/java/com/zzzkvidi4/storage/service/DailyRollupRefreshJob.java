@@ -0,0 +1,65 @@
+package com.zzzkvidi4.storage.service;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Job which refreshes daily rollup periodically on its own daemon thread.
+ * Every run recalculates only days changed since previous run.
+ */
+public final class DailyRollupRefreshJob implements AutoCloseable {
+    @NotNull
+    private static final Logger LOGGER = Logger.getLogger(DailyRollupRefreshJob.class.getName());
+    @NotNull
+    private final InvoiceRollupService invoiceRollupService;
+    @NotNull
+    private final ScheduledExecutorService executor;
+    /**
+     * Failure of last run, failed days stay marked and are refreshed by next run.
+     */
+    @Getter
+    @Nullable
+    private volatile RuntimeException lastFailure;
+
+    /**
+     * Constructor which starts job.
+     *
+     * @param invoiceRollupService - service to refresh rollup
+     * @param periodMillis         - delay between end of run and start of next run
+     */
+    public DailyRollupRefreshJob(@NotNull InvoiceRollupService invoiceRollupService, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Refresh period should be positive!");
+        }
+        this.invoiceRollupService = invoiceRollupService;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-rollup-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::run, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            invoiceRollupService.refresh();
+            lastFailure = null;
+        } catch (RuntimeException e) {
+            // exception would cancel next runs
+            lastFailure = e;
+            LOGGER.log(Level.WARNING, "Daily rollup was not refreshed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.zzzkvidi4.storage.service;
+
+import com.zzzkvidi4.storage.model.DetachedPartition;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Service to maintain monthly partitions of invoice and invoice_item,
+ * available only if partitioning is enabled (see migration db/partitioning/V6_1).
+ */
+@RequiredArgsConstructor
+public final class InvoicePartitionService {
+    @NotNull
+    private static final String MAINTAIN_QUERY = "SELECT detached_partition FROM maintain_invoice_partitions(?, ?)";
+
+    @NotNull
+    private final InvoiceRepository invoiceRepository;
+
+    /**
+     * Method to create partitions of next months and detach partitions older than retention period.
+     * Detached tables are not dropped, their rows are removed from organization volumes and daily rollup.
+     * Rows of months without partitions are kept in default partitions, and month having such rows is skipped.
+     *
+     * @param monthsAhead     - count of months after current one to create partitions for
+     * @param retentionMonths - count of months before current one to keep attached, {@literal null} to keep all
+     * @return                - names of detached tables
+     */
+    @NotNull
+    public List<String> maintainPartitions(int monthsAhead, @Nullable Integer retentionMonths) {
+        if (monthsAhead < 0 || retentionMonths != null && retentionMonths < 0) {
+            throw new IllegalArgumentException("Count of months should not be negative!");
+        }
+        return invoiceRepository.findAllByQuery(DetachedPartition.class, MAINTAIN_QUERY, monthsAhead, retentionMonths == null ? -1 : retentionMonths)
+                .stream()
+                .map(DetachedPartition::getName)
+                .collect(toList());
+    }
+}
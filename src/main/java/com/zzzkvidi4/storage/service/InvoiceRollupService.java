@@ -0,0 +1,83 @@
+package com.zzzkvidi4.storage.service;
+
+import com.zzzkvidi4.storage.model.AveragePrice;
+import com.zzzkvidi4.storage.model.DaySummary;
+import com.zzzkvidi4.storage.model.RefreshedDay;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Service to calculate reports of whole days from daily rollup (see migration V5).
+ * Reports include changes committed before last {@link #refresh()}, later ones are included by next refresh.
+ */
+@RequiredArgsConstructor
+public final class InvoiceRollupService {
+    @NotNull
+    private static final String REFRESH_QUERY = "SELECT refreshed_day FROM refresh_invoice_daily_rollup()";
+    @NotNull
+    private static final String DAILY_SUMMARY_QUERY = "" +
+            "SELECT r.day, CAST(SUM(r.amount) AS int8) AS price, SUM(r.volume) AS volume\n" +
+            "FROM invoice_daily_rollup r\n" +
+            "WHERE r.day >= ? AND r.day < ?\n" +
+            "GROUP BY r.day";
+    /**
+     * The same numeric division which is made by AVG, so result equals average of raw rows.
+     */
+    @NotNull
+    private static final String AVERAGE_PRICE_QUERY = "" +
+            "SELECT CAST(SUM(r.price_sum) / SUM(r.item_count) AS float8) AS average_price\n" +
+            "FROM invoice_daily_rollup r\n" +
+            "WHERE r.day >= ? AND r.day < ?";
+
+    @NotNull
+    private final InvoiceRepository invoiceRepository;
+
+    /**
+     * Method to recalculate rollup of days changed since last refresh.
+     *
+     * @return - recalculated days
+     */
+    @NotNull
+    public List<LocalDate> refresh() {
+        return invoiceRepository.findAllByQuery(RefreshedDay.class, REFRESH_QUERY)
+                .stream()
+                .map(RefreshedDay::getDay)
+                .collect(toList());
+    }
+
+    /**
+     * Method to get summary of invoices by days.
+     *
+     * @param startInclusive - first day
+     * @param endExclusive   - day after last day
+     * @return               - summary of days with invoice items
+     */
+    @NotNull
+    public InvoiceService.DailyInvoiceSummary getDailyInvoiceSummary(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
+        return new InvoiceService.DailyInvoiceSummary(invoiceRepository.findAllByQuery(DaySummary.class, DAILY_SUMMARY_QUERY, startInclusive, endExclusive)
+                .stream()
+                .collect(toMap(DaySummary::getDay, d -> Optional.of(new InvoiceService.InvoiceSummary(d.getPrice(), d.getVolume())))));
+    }
+
+    /**
+     * Method to get average price of invoice items.
+     *
+     * @param startInclusive - first day
+     * @param endExclusive   - day after last day
+     * @return               - average price or {@literal null} if there are no invoice items
+     */
+    @Nullable
+    public Double getAveragePrice(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
+        List<AveragePrice> averagePrices = invoiceRepository.findAllByQuery(AveragePrice.class, AVERAGE_PRICE_QUERY, startInclusive, endExclusive);
+        return averagePrices.isEmpty() ? null : averagePrices.get(0).getAveragePrice();
+    }
+}
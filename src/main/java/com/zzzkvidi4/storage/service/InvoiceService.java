@@ -1,9 +1,11 @@
 package com.zzzkvidi4.storage.service;
 
-import com.zzzkvidi4.storage.model.Invoice;
-import com.zzzkvidi4.storage.model.InvoiceItem;
+import com.zzzkvidi4.storage.metrics.OperationTimer;
+import com.zzzkvidi4.storage.model.AveragePrice;
+import com.zzzkvidi4.storage.model.DaySummary;
 import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
 import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.repository.Pair;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -11,81 +13,244 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
-import static java.util.stream.Collectors.*;
+import static java.util.stream.Collectors.toMap;
 
 /**
  * Service to calculate reports.
  */
 @RequiredArgsConstructor
 public final class InvoiceService {
+    /**
+     * Price of item is rounded half up like {@link Math#round(double)}, sums are cast back from numeric.
+     * Items are filtered by their copy of invoice date, so only partitions of range are read.
+     */
+    @NotNull
+    private static final String DAILY_SUMMARY_QUERY = "" +
+            "SELECT\n" +
+            "  CAST(ii.invoice_date AS date) AS day,\n" +
+            "  CAST(SUM(CAST(FLOOR(ii.price * ii.volume + 0.5) AS int8)) AS int8) AS price,\n" +
+            "  SUM(ii.volume) AS volume\n" +
+            "FROM invoice_item ii\n" +
+            "WHERE ii.invoice_date >= ? AND ii.invoice_date < ?\n" +
+            "GROUP BY CAST(ii.invoice_date AS date)";
+    @NotNull
+    private static final String AVERAGE_PRICE_QUERY = "" +
+            "SELECT CAST(AVG(ii.price) AS float8) AS average_price\n" +
+            "FROM invoice_item ii\n" +
+            "WHERE ii.invoice_date >= ? AND ii.invoice_date < ?";
+
     @NotNull
     private final InvoiceRepository invoiceRepository;
     @NotNull
     private final InvoiceItemRepository invoiceItemRepository;
+    /**
+     * Memoized summaries of past days, empty for days without invoice items.
+     */
+    @NotNull
+    private final Map<LocalDate, Optional<InvoiceSummary>> memoizedDays = new ConcurrentHashMap<>();
+    @NotNull
+    private final ReentrantLock memoLock = new ReentrantLock();
+    /**
+     * Counter of invalidations, summaries loaded before invalidation are not memoized.
+     */
+    private long memoGeneration = 0;
 
+    /**
+     * Method to get summary of invoices by days. Summaries of past days are memoized,
+     * only days which were not requested yet or were invalidated are loaded from database.
+     *
+     * @param startInclusive - first day
+     * @param endExclusive   - day after last day
+     * @return               - summary of days with invoice items
+     */
     @NotNull
     public DailyInvoiceSummary getDailyInvoiceSummary(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
-        Map<String, LocalDate> invoices = invoiceRepository.findAllByQuery("" +
-                "SELECT *\n" +
-                "FROM invoice i\n" +
-                "WHERE i.date >= ? AND i.date < ?",
-                startInclusive,
-                endExclusive
-        ).stream().collect(toMap(Invoice::getId, i -> i.getDate().atZone(ZoneId.systemDefault()).toLocalDate()));
-
-        if (invoices.isEmpty()) {
-            return new DailyInvoiceSummary(new HashMap<>());
+        OperationTimer timer = startTimer("getDailyInvoiceSummary");
+        try {
+            Map<LocalDate, Optional<InvoiceSummary>> summary = new HashMap<>();
+            for (Pair<LocalDate, LocalDate> range : collectMemoizedDays(startInclusive, endExclusive, summary)) {
+                long generation = getMemoGeneration();
+                Map<LocalDate, Optional<InvoiceSummary>> loaded = loadDailySummary(range.getValue1(), range.getValue2());
+                memoize(range, loaded, generation);
+                summary.putAll(loaded);
+            }
+            timer.finish(summary.size());
+            return new DailyInvoiceSummary(summary);
+        } finally {
+            timer.abort();
+        }
+    }
+
+    @NotNull
+    public CompletableFuture<DailyInvoiceSummary> getDailyInvoiceSummaryAsync(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
+        OperationTimer timer = startTimer("getDailyInvoiceSummaryAsync");
+        Map<LocalDate, Optional<InvoiceSummary>> summary = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (Pair<LocalDate, LocalDate> range : collectMemoizedDays(startInclusive, endExclusive, summary)) {
+            long generation = getMemoGeneration();
+            loads.add(loadDailySummaryAsync(range.getValue1(), range.getValue2()).thenAccept(loaded -> {
+                memoize(range, loaded, generation);
+                summary.putAll(loaded);
+            }));
+        }
+        return timer.finishOnSuccess(CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> new DailyInvoiceSummary(new HashMap<>(summary))), s -> s.getSummary().size());
+    }
+
+    /**
+     * Method to forget memoized summary of day, should be called when invoices of this day are written.
+     *
+     * @param day - day
+     */
+    public void invalidateDailySummary(@NotNull LocalDate day) {
+        invalidateDailySummaries(day, day.plusDays(1));
+    }
+
+    /**
+     * Method to forget memoized summaries of days.
+     *
+     * @param startInclusive - first day
+     * @param endExclusive   - day after last day
+     */
+    public void invalidateDailySummaries(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
+        memoLock.lock();
+        try {
+            memoGeneration++;
+            for (LocalDate day = startInclusive; day.isBefore(endExclusive); day = day.plusDays(1)) {
+                memoizedDays.remove(day);
+            }
+        } finally {
+            memoLock.unlock();
         }
+    }
 
-        Map<LocalDate, Optional<InvoiceSummary>> invoiceItems = invoiceItemRepository.findAllByQuery("" +
-                "SELECT *\n" +
-                "FROM invoice_item ii\n" +
-                "WHERE ii.invoice_id IN (" + getParamsString(invoices.size()) + ")",
-                invoices.keySet().toArray()
-        ).stream().collect(groupingBy(ii -> invoices.get(ii.getInvoiceId()), mapping(ii -> new InvoiceSummary(Math.round(ii.getPrice() * ii.getVolume()), ii.getVolume()), reducing(InvoiceSummary::sum))));
-        return new DailyInvoiceSummary(invoiceItems);
+    /**
+     * Method to forget all memoized summaries.
+     */
+    public void invalidateDailySummaries() {
+        memoLock.lock();
+        try {
+            memoGeneration++;
+            memoizedDays.clear();
+        } finally {
+            memoLock.unlock();
+        }
     }
 
     @Nullable
     public Double getAveragePrice(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
-        List<String> invoices = invoiceRepository.findAllByQuery("" +
-                        "SELECT *\n" +
-                        "FROM invoice i\n" +
-                        "WHERE i.date >= ? AND i.date < ?",
-                startInclusive,
-                endExclusive
-        ).stream().map(Invoice::getId).collect(toList());
-
-        if (invoices.isEmpty()) {
-            return null;
+        OperationTimer timer = startTimer("getAveragePrice");
+        try {
+            Double averagePrice = toAveragePrice(invoiceItemRepository.findAllByQuery(AveragePrice.class, AVERAGE_PRICE_QUERY, startInclusive, endExclusive));
+            timer.finish(averagePrice == null ? 0 : 1);
+            return averagePrice;
+        } finally {
+            timer.abort();
         }
+    }
 
-        OptionalDouble averagePrice = invoiceItemRepository.findAllByQuery("" +
-                "SELECT *\n" +
-                "FROM invoice_item ii\n" +
-                "WHERE ii.invoice_id IN (" + getParamsString(invoices.size()) + ")",
-                invoices.toArray()
-        ).stream().mapToInt(InvoiceItem::getPrice).average();
-        if (averagePrice.isPresent()) {
-            return averagePrice.getAsDouble();
-        } else {
-            return null;
-        }
+    @NotNull
+    public CompletableFuture<Double> getAveragePriceAsync(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
+        OperationTimer timer = startTimer("getAveragePriceAsync");
+        return timer.finishOnSuccess(invoiceItemRepository.findAllByQueryAsync(AveragePrice.class, AVERAGE_PRICE_QUERY, startInclusive, endExclusive)
+                .thenApply(this::toAveragePrice), averagePrice -> averagePrice == null ? 0 : 1);
     }
 
+    /**
+     * Method to take memoized summaries of days and find ranges of days which should be loaded.
+     *
+     * @param startInclusive - first day
+     * @param endExclusive   - day after last day
+     * @param summary        - summary to put memoized days with invoice items into
+     * @return               - ranges of days which are not memoized
+     */
     @NotNull
-    String getParamsString(int size) {
-        StringBuilder params = new StringBuilder();
-        for (int i = 0; i < size; ++i) {
-            if (i != 0) {
-                params.append(", ");
+    private List<Pair<LocalDate, LocalDate>> collectMemoizedDays(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive, @NotNull Map<LocalDate, Optional<InvoiceSummary>> summary) {
+        List<Pair<LocalDate, LocalDate>> missing = new ArrayList<>();
+        LocalDate missingStart = null;
+        for (LocalDate day = startInclusive; day.isBefore(endExclusive); day = day.plusDays(1)) {
+            Optional<InvoiceSummary> daySummary = memoizedDays.get(day);
+            if (daySummary == null) {
+                if (missingStart == null) {
+                    missingStart = day;
+                }
+                continue;
             }
-            params.append("?");
+            if (missingStart != null) {
+                missing.add(new Pair<>(missingStart, day));
+                missingStart = null;
+            }
+            if (daySummary.isPresent()) {
+                summary.put(day, daySummary);
+            }
+        }
+        if (missingStart != null) {
+            missing.add(new Pair<>(missingStart, endExclusive));
         }
-        return params.toString();
+        return missing;
+    }
+
+    private long getMemoGeneration() {
+        memoLock.lock();
+        try {
+            return memoGeneration;
+        } finally {
+            memoLock.unlock();
+        }
+    }
+
+    /**
+     * Method to memoize loaded summaries of past days unless some day was invalidated while they were loaded.
+     * Days without invoice items are memoized as empty, current and future days are not memoized.
+     *
+     * @param range      - loaded days
+     * @param loaded     - summaries of days with invoice items
+     * @param generation - generation before days were loaded
+     */
+    private void memoize(@NotNull Pair<LocalDate, LocalDate> range, @NotNull Map<LocalDate, Optional<InvoiceSummary>> loaded, long generation) {
+        LocalDate today = LocalDate.now();
+        memoLock.lock();
+        try {
+            if (memoGeneration != generation) {
+                return;
+            }
+            for (LocalDate day = range.getValue1(); day.isBefore(range.getValue2()) && day.isBefore(today); day = day.plusDays(1)) {
+                memoizedDays.put(day, loaded.getOrDefault(day, Optional.empty()));
+            }
+        } finally {
+            memoLock.unlock();
+        }
+    }
+
+    @NotNull
+    private Map<LocalDate, Optional<InvoiceSummary>> loadDailySummary(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
+        return summarize(invoiceRepository.findAllByQuery(DaySummary.class, DAILY_SUMMARY_QUERY, startInclusive, endExclusive));
+    }
+
+    @NotNull
+    private CompletableFuture<Map<LocalDate, Optional<InvoiceSummary>>> loadDailySummaryAsync(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
+        return invoiceRepository.findAllByQueryAsync(DaySummary.class, DAILY_SUMMARY_QUERY, startInclusive, endExclusive)
+                .thenApply(this::summarize);
+    }
+
+    @NotNull
+    private Map<LocalDate, Optional<InvoiceSummary>> summarize(@NotNull List<DaySummary> days) {
+        return days.stream().collect(toMap(DaySummary::getDay, d -> Optional.of(new InvoiceSummary(d.getPrice(), d.getVolume()))));
+    }
+
+    @NotNull
+    private OperationTimer startTimer(@NotNull String operation) {
+        return OperationTimer.start(invoiceRepository.getMetricsRecorder(), InvoiceService.class.getSimpleName(), operation);
+    }
+
+    @Nullable
+    private Double toAveragePrice(@NotNull List<AveragePrice> averagePrices) {
+        return averagePrices.isEmpty() ? null : averagePrices.get(0).getAveragePrice();
     }
 
     @Getter
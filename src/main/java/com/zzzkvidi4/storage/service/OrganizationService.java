@@ -1,104 +1,195 @@
 package com.zzzkvidi4.storage.service;
 
+import com.zzzkvidi4.storage.metrics.OperationTimer;
 import com.zzzkvidi4.storage.model.Item;
 import com.zzzkvidi4.storage.model.Organization;
 import com.zzzkvidi4.storage.model.OrganizationWithItem;
+import com.zzzkvidi4.storage.repository.ColumnType;
 import com.zzzkvidi4.storage.repository.OrganizationRepository;
 import com.zzzkvidi4.storage.repository.Pair;
+import com.zzzkvidi4.storage.repository.SqlArray;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.NotNull;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
-import static java.util.stream.Collectors.*;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Service to calculate reports.
  */
 @RequiredArgsConstructor
 public final class OrganizationService {
+    /**
+     * Volumes are maintained by triggers (see migration V4), so request reads first rows of index.
+     */
+    @NotNull
+    private static final String MOST_ACTIVE_ORGANIZATIONS_QUERY = "" +
+            "SELECT o.name, o.itn, o.organization_id, o.account\n" +
+            "FROM organization_volume ov\n" +
+            "    INNER JOIN organization o ON ov.organization_id = o.organization_id\n" +
+            "WHERE ov.item_count > 0\n" +
+            "ORDER BY ov.volume DESC, ov.organization_id\n" +
+            "LIMIT 10\n";
+    /**
+     * Criteria are passed as arrays of items and volumes, every criterion is numbered,
+     * so organization qualifies when it satisfies every number (criteria may repeat item).
+     */
+    @NotNull
+    private static final String ORGANIZATIONS_WITH_ITEM_VOLUMES_QUERY = "" +
+            "WITH criteria AS (\n" +
+            "  SELECT *\n" +
+            "  FROM unnest(?, ?) WITH ORDINALITY AS c(item_id, volume, n)\n" +
+            "), item_volume AS (\n" +
+            "  SELECT i.organization_id, ii.item_id, SUM(ii.volume) AS volume\n" +
+            "  FROM invoice i\n" +
+            "      INNER JOIN invoice_item ii on i.date = ii.invoice_date AND i.invoice_id = ii.invoice_id\n" +
+            "  WHERE ii.item_id IN (SELECT item_id FROM criteria)\n" +
+            "  GROUP BY i.organization_id, ii.item_id\n" +
+            ")\n" +
+            "SELECT o.name, o.itn, o.organization_id, o.account\n" +
+            "FROM organization o\n" +
+            "    INNER JOIN item_volume iv ON o.organization_id = iv.organization_id\n" +
+            "    INNER JOIN criteria c ON iv.item_id = c.item_id AND iv.volume > c.volume\n" +
+            "GROUP BY o.organization_id, o.name, o.itn, o.account\n" +
+            "HAVING COUNT(DISTINCT c.n) = (SELECT COUNT(*) FROM criteria)";
+    /**
+     * Range is repeated for invoice items, so partitions of both tables are pruned.
+     */
+    @NotNull
+    private static final String ORGANIZATIONS_WITH_ITEMS_QUERY = "" +
+            "SELECT DISTINCT\n" +
+            "  o.organization_id AS organization_id,\n" +
+            "  o.name AS organization_name,\n" +
+            "  o.itn AS organization_itn,\n" +
+            "  o.account AS organization_account,\n" +
+            "  it.item_id AS item_id,\n" +
+            "  it.name AS item_name,\n" +
+            "  it.code AS item_code\n" +
+            "FROM organization o\n" +
+            "    LEFT JOIN (SELECT * FROM invoice i WHERE i.date >= ? AND i.date < ?) AS inv ON o.organization_id = inv.organization_id\n" +
+            "    LEFT JOIN invoice_item ii ON inv.date = ii.invoice_date AND inv.invoice_id = ii.invoice_id AND ii.invoice_date >= ? AND ii.invoice_date < ?\n" +
+            "    LEFT JOIN item it ON ii.item_id = it.item_id";
+
     @NotNull
     private final OrganizationRepository organizationRepository;
 
 
     @NotNull
     public List<Organization> findTenTheMostActiveOrganizations() {
-        return organizationRepository.findAllByQuery("" +
-                "WITH inc_count AS (\n" +
-                "  SELECT o.*, SUM(ii.volume) AS volume\n" +
-                "  FROM organization o\n" +
-                "      INNER JOIN invoice i on o.organization_id = i.organization_id\n" +
-                "      INNER JOIN invoice_item ii on i.invoice_id = ii.invoice_id\n" +
-                "  GROUP BY o.organization_id, o.name, o.itn, o.account\n" +
-                ")\n" +
-                "SELECT name, itn, organization_id, account\n" +
-                "FROM inc_count\n" +
-                "ORDER BY volume DESC\n" +
-                "LIMIT 10\n"
-        );
+        OperationTimer timer = startTimer("findTenTheMostActiveOrganizations");
+        try {
+            List<Organization> organizations = organizationRepository.findAllByQuery(MOST_ACTIVE_ORGANIZATIONS_QUERY);
+            timer.finish(organizations.size());
+            return organizations;
+        } finally {
+            timer.abort();
+        }
+    }
+
+    @NotNull
+    public CompletableFuture<List<Organization>> findTenTheMostActiveOrganizationsAsync() {
+        OperationTimer timer = startTimer("findTenTheMostActiveOrganizationsAsync");
+        return timer.finishOnSuccess(organizationRepository.findAllByQueryAsync(MOST_ACTIVE_ORGANIZATIONS_QUERY), List::size);
     }
 
+    /**
+     * Method to find organizations which bought more than volume of every item with one query.
+     *
+     * @param itemsWithVolume - items with minimal volume
+     * @return                - organizations
+     */
     @NotNull
     public List<Organization> findOrganizationsWithItemsGreaterThan(@NotNull List<Pair<String, Double>> itemsWithVolume) {
         if (itemsWithVolume.isEmpty()) {
             return new LinkedList<>();
         }
+        OperationTimer timer = startTimer("findOrganizationsWithItemsGreaterThan");
+        try {
+            List<Organization> organizations = organizationRepository.findAllByQuery(ORGANIZATIONS_WITH_ITEM_VOLUMES_QUERY, getCriteriaArguments(itemsWithVolume));
+            timer.finish(organizations.size());
+            return organizations;
+        } finally {
+            timer.abort();
+        }
+    }
 
-        String query = "" +
-                "WITH inc_count AS (\n" +
-                "  SELECT o.*, SUM(ii.volume) AS volume\n" +
-                "  FROM organization o\n" +
-                "      INNER JOIN invoice i on o.organization_id = i.organization_id\n" +
-                "      INNER JOIN invoice_item ii on i.invoice_id = ii.invoice_id\n" +
-                "  WHERE ii.item_id = ?\n" +
-                "  GROUP BY o.organization_id, o.name, o.itn, o.account\n" +
-                "  HAVING SUM(ii.volume) > ?\n" +
-                ")\n" +
-                "SELECT name, itn, organization_id, account\n" +
-                "FROM inc_count\n";
-        Set<Organization> result = new HashSet<>();
-        boolean organizationsInitialized = false;
-        for (Pair<String, Double> itemWithVolume : itemsWithVolume) {
-            List<Organization> organizations = organizationRepository.findAllByQuery(query, itemWithVolume.getValue1(), itemWithVolume.getValue2());
-            if (!organizationsInitialized) {
-                result.addAll(organizations);
-                organizationsInitialized = true;
-            }
-            result.retainAll(organizations);
+    @NotNull
+    public CompletableFuture<List<Organization>> findOrganizationsWithItemsGreaterThanAsync(@NotNull List<Pair<String, Double>> itemsWithVolume) {
+        if (itemsWithVolume.isEmpty()) {
+            return CompletableFuture.completedFuture(new LinkedList<>());
         }
-        return new ArrayList<>(result);
+        OperationTimer timer = startTimer("findOrganizationsWithItemsGreaterThanAsync");
+        return timer.finishOnSuccess(organizationRepository.findAllByQueryAsync(ORGANIZATIONS_WITH_ITEM_VOLUMES_QUERY, getCriteriaArguments(itemsWithVolume)), List::size);
     }
 
+    /**
+     * Method to find items bought by organizations. Rows are streamed into result,
+     * so memory use depends on count of distinct organizations and items, not on count of rows.
+     *
+     * @param startInclusive - first day
+     * @param endExclusive   - day after last day
+     * @return               - items by organization, empty set for organization without invoices
+     */
     @NotNull
     public Map<Organization, Set<Item>> getOrganizationsWithItems(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
-        List<OrganizationWithItem> organizationWithItems = organizationRepository.findAllByQuery(
-                OrganizationWithItem.class,
-                "" +
-                        "SELECT DISTINCT\n" +
-                        "  o.organization_id AS organization_id,\n" +
-                        "  o.name AS organization_name,\n" +
-                        "  o.itn AS organization_itn,\n" +
-                        "  o.account AS organization_account,\n" +
-                        "  it.item_id AS item_id,\n" +
-                        "  it.name AS item_name,\n" +
-                        "  it.code AS item_code\n" +
-                        "FROM organization o\n" +
-                        "    LEFT JOIN (SELECT * FROM invoice i WHERE i.date >= ? AND i.date < ?) AS inv ON o.organization_id = inv.organization_id\n" +
-                        "    LEFT JOIN invoice_item ii ON inv.invoice_id = ii.invoice_id\n" +
-                        "    LEFT JOIN item it ON ii.item_id = it.item_id",
-                startInclusive,
-                endExclusive
-        );
-        Map<Organization, Set<Item>> organizationSetMap = organizationWithItems.stream()
-                .collect(
-                        groupingBy(
-                                OrganizationWithItem::getOrganization,
-                                mapping(OrganizationWithItem::getItem, toSet())
-                        )
-                );
-        Item emptyItem = new Item();
-        organizationSetMap.values().forEach(s -> s.remove(emptyItem));
-        return organizationSetMap;
+        OperationTimer timer = startTimer("getOrganizationsWithItems");
+        try {
+            OrganizationItemsCollector collector = new OrganizationItemsCollector();
+            organizationRepository.forEach(OrganizationWithItem.class, ORGANIZATIONS_WITH_ITEMS_QUERY, collector, startInclusive, endExclusive, startInclusive, endExclusive);
+            timer.finish(collector.getItemsByOrganization().size());
+            return collector.getItemsByOrganization();
+        } finally {
+            timer.abort();
+        }
+    }
+
+    @NotNull
+    public CompletableFuture<Map<Organization, Set<Item>>> getOrganizationsWithItemsAsync(@NotNull LocalDate startInclusive, @NotNull LocalDate endExclusive) {
+        OperationTimer timer = startTimer("getOrganizationsWithItemsAsync");
+        OrganizationItemsCollector collector = new OrganizationItemsCollector();
+        return timer.finishOnSuccess(organizationRepository.forEachAsync(OrganizationWithItem.class, ORGANIZATIONS_WITH_ITEMS_QUERY, collector, startInclusive, endExclusive, startInclusive, endExclusive)
+                .thenApply(ignored -> collector.getItemsByOrganization()), Map::size);
+    }
+
+    @NotNull
+    private OperationTimer startTimer(@NotNull String operation) {
+        return OperationTimer.start(organizationRepository.getMetricsRecorder(), OrganizationService.class.getSimpleName(), operation);
+    }
+
+    @NotNull
+    private Object[] getCriteriaArguments(@NotNull List<Pair<String, Double>> itemsWithVolume) {
+        return new Object[]{
+                SqlArray.of(ColumnType.STRING, itemsWithVolume.stream().map(Pair::getValue1).collect(toList())),
+                SqlArray.of(ColumnType.DOUBLE, itemsWithVolume.stream().map(Pair::getValue2).collect(toList()))
+        };
+    }
+
+    /**
+     * Consumer of report rows which groups items by organization.
+     * Every distinct organization and item is created once and shared by all rows which refer to it.
+     */
+    private static final class OrganizationItemsCollector implements Consumer<OrganizationWithItem> {
+        @NotNull
+        private final Map<String, Organization> organizations = new HashMap<>();
+        @NotNull
+        private final Map<String, Item> items = new HashMap<>();
+        @Getter
+        @NotNull
+        private final Map<Organization, Set<Item>> itemsByOrganization = new HashMap<>();
+
+        @Override
+        public void accept(@NotNull OrganizationWithItem row) {
+            Organization organization = organizations.computeIfAbsent(row.getOrganizationId(), id -> row.getOrganization());
+            Set<Item> organizationItems = itemsByOrganization.computeIfAbsent(organization, o -> new HashSet<>());
+            // organization without invoices is joined with null item
+            if (row.getItemId() != null) {
+                organizationItems.add(items.computeIfAbsent(row.getItemId(), id -> row.getItem()));
+            }
+        }
     }
 }
@@ -0,0 +1 @@
+create index invoice_date_idx on invoice (date, invoice_id);
@@ -0,0 +1,64 @@
+-- total volume of invoice items by organization, maintained by triggers of invoice and invoice_item
+create table organization_volume (
+  organization_id varchar(36)    not null,
+  volume          numeric(30, 3) not null,
+  item_count      bigint         not null,
+  constraint organization_volume_pk primary key (organization_id),
+  constraint organization_volume_organization_fk foreign key (organization_id) references organization (organization_id) on delete cascade
+);
+
+create index organization_volume_top_idx on organization_volume (volume desc, organization_id) where item_count > 0;
+
+insert into organization_volume (organization_id, volume, item_count)
+select i.organization_id, sum(ii.volume), count(*)
+from invoice i
+  inner join invoice_item ii on i.invoice_id = ii.invoice_id
+group by i.organization_id;
+
+create function add_organization_volume(p_organization_id varchar, p_volume numeric, p_item_count bigint) returns void as $$
+begin
+  insert into organization_volume (organization_id, volume, item_count)
+  values (p_organization_id, p_volume, p_item_count)
+  on conflict (organization_id) do update
+    set volume = organization_volume.volume + excluded.volume,
+        item_count = organization_volume.item_count + excluded.item_count;
+end;
+$$ language plpgsql;
+
+create function invoice_item_volume_trigger() returns trigger as $$
+begin
+  if tg_op in ('UPDATE', 'DELETE') then
+    perform add_organization_volume(i.organization_id, -old.volume, -1) from invoice i where i.invoice_id = old.invoice_id;
+  end if;
+  if tg_op in ('INSERT', 'UPDATE') then
+    perform add_organization_volume(i.organization_id, new.volume, 1) from invoice i where i.invoice_id = new.invoice_id;
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+create trigger invoice_item_volume
+  after insert or delete or update of invoice_id, volume on invoice_item
+  for each row execute procedure invoice_item_volume_trigger();
+
+-- items of invoice move to another organization
+create function invoice_volume_trigger() returns trigger as $$
+declare
+  v_volume     numeric;
+  v_item_count bigint;
+begin
+  select coalesce(sum(ii.volume), 0), count(*) into v_volume, v_item_count
+  from invoice_item ii
+  where ii.invoice_id = new.invoice_id;
+  if v_item_count > 0 then
+    perform add_organization_volume(old.organization_id, -v_volume, -v_item_count);
+    perform add_organization_volume(new.organization_id, v_volume, v_item_count);
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+create trigger invoice_volume
+  after update of organization_id on invoice
+  for each row when (old.organization_id is distinct from new.organization_id)
+  execute procedure invoice_volume_trigger();
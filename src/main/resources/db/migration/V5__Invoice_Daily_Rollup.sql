@@ -0,0 +1,83 @@
+-- invoice items summarized by day, organization and item, refreshed by refresh_invoice_daily_rollup()
+create table invoice_daily_rollup (
+  day             date           not null,
+  organization_id varchar(36)    not null,
+  item_id         varchar(36)    not null,
+  volume          numeric(30, 3) not null,
+  -- sum of price * volume of items, every product is rounded half up
+  amount          bigint         not null,
+  price_sum       bigint         not null,
+  item_count      bigint         not null,
+  constraint invoice_daily_rollup_pk primary key (day, organization_id, item_id)
+);
+
+-- days changed since last refresh
+create table invoice_rollup_dirty_day (
+  day date not null,
+  constraint invoice_rollup_dirty_day_pk primary key (day)
+);
+
+insert into invoice_daily_rollup (day, organization_id, item_id, volume, amount, price_sum, item_count)
+select cast(i.date as date), i.organization_id, ii.item_id, sum(ii.volume), sum(cast(floor(ii.price * ii.volume + 0.5) as bigint)), sum(ii.price), count(*)
+from invoice i
+  inner join invoice_item ii on i.invoice_id = ii.invoice_id
+group by cast(i.date as date), i.organization_id, ii.item_id;
+
+create function mark_invoice_rollup_day(p_day date) returns void as $$
+begin
+  insert into invoice_rollup_dirty_day (day) values (p_day) on conflict do nothing;
+end;
+$$ language plpgsql;
+
+create function invoice_item_rollup_trigger() returns trigger as $$
+begin
+  if tg_op in ('UPDATE', 'DELETE') then
+    perform mark_invoice_rollup_day(cast(i.date as date)) from invoice i where i.invoice_id = old.invoice_id;
+  end if;
+  if tg_op in ('INSERT', 'UPDATE') then
+    perform mark_invoice_rollup_day(cast(i.date as date)) from invoice i where i.invoice_id = new.invoice_id;
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+create trigger invoice_item_rollup
+  after insert or delete or update on invoice_item
+  for each row execute procedure invoice_item_rollup_trigger();
+
+create function invoice_rollup_trigger() returns trigger as $$
+begin
+  if exists (select 1 from invoice_item ii where ii.invoice_id = new.invoice_id) then
+    perform mark_invoice_rollup_day(cast(old.date as date));
+    perform mark_invoice_rollup_day(cast(new.date as date));
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+create trigger invoice_rollup
+  after update of date, organization_id on invoice
+  for each row execute procedure invoice_rollup_trigger();
+
+-- recalculates changed days from raw rows, day changed by concurrent transaction stays marked until next refresh
+create function refresh_invoice_daily_rollup() returns table (refreshed_day date) as $$
+declare
+  v_days date[];
+begin
+  with dirty as (
+    delete from invoice_rollup_dirty_day d returning d.day
+  )
+  select coalesce(array_agg(dirty.day), '{}') into v_days from dirty;
+
+  delete from invoice_daily_rollup r where r.day = any (v_days);
+
+  insert into invoice_daily_rollup (day, organization_id, item_id, volume, amount, price_sum, item_count)
+  select d.day, i.organization_id, ii.item_id, sum(ii.volume), sum(cast(floor(ii.price * ii.volume + 0.5) as bigint)), sum(ii.price), count(*)
+  from unnest(v_days) as d(day)
+    inner join invoice i on i.date >= d.day and i.date < d.day + 1
+    inner join invoice_item ii on i.invoice_id = ii.invoice_id
+  group by d.day, i.organization_id, ii.item_id;
+
+  return query select unnest(v_days);
+end;
+$$ language plpgsql;
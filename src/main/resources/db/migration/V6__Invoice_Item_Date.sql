@@ -0,0 +1,103 @@
+-- invoice_item carries date of its invoice, so reports filter both tables by date
+-- and tables can be partitioned by date (see db/partitioning)
+alter table invoice add constraint invoice_date_uq unique (date, invoice_id);
+drop index invoice_date_idx;
+
+drop trigger invoice_item_rollup on invoice_item;
+
+alter table invoice_item add column invoice_date timestamp;
+update invoice_item ii set invoice_date = i.date from invoice i where i.invoice_id = ii.invoice_id;
+alter table invoice_item alter column invoice_date set not null;
+alter table invoice_item drop constraint invoice_item_invoice_fk;
+alter table invoice_item add constraint invoice_item_invoice_fk foreign key (invoice_date, invoice_id) references invoice (date, invoice_id) on update cascade;
+create index invoice_item_invoice_date_idx on invoice_item (invoice_date, invoice_id);
+
+-- date is taken from invoice, so clients do not write it
+create function invoice_item_date_trigger() returns trigger as $$
+begin
+  if tg_op = 'INSERT' or new.invoice_id is distinct from old.invoice_id then
+    select i.date into new.invoice_date from invoice i where i.invoice_id = new.invoice_id;
+  end if;
+  return new;
+end;
+$$ language plpgsql;
+
+create trigger invoice_item_date
+  before insert or update of invoice_id on invoice_item
+  for each row execute procedure invoice_item_date_trigger();
+
+create or replace function invoice_item_volume_trigger() returns trigger as $$
+begin
+  if tg_op in ('UPDATE', 'DELETE') then
+    perform add_organization_volume(i.organization_id, -old.volume, -1) from invoice i where i.date = old.invoice_date and i.invoice_id = old.invoice_id;
+  end if;
+  if tg_op in ('INSERT', 'UPDATE') then
+    perform add_organization_volume(i.organization_id, new.volume, 1) from invoice i where i.date = new.invoice_date and i.invoice_id = new.invoice_id;
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+create or replace function invoice_volume_trigger() returns trigger as $$
+declare
+  v_volume     numeric;
+  v_item_count bigint;
+begin
+  select coalesce(sum(ii.volume), 0), count(*) into v_volume, v_item_count
+  from invoice_item ii
+  where ii.invoice_date = new.date and ii.invoice_id = new.invoice_id;
+  if v_item_count > 0 then
+    perform add_organization_volume(old.organization_id, -v_volume, -v_item_count);
+    perform add_organization_volume(new.organization_id, v_volume, v_item_count);
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+create or replace function invoice_item_rollup_trigger() returns trigger as $$
+begin
+  if tg_op in ('UPDATE', 'DELETE') then
+    perform mark_invoice_rollup_day(cast(old.invoice_date as date));
+  end if;
+  if tg_op in ('INSERT', 'UPDATE') then
+    perform mark_invoice_rollup_day(cast(new.invoice_date as date));
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+create trigger invoice_item_rollup
+  after insert or delete or update of invoice_id, invoice_date, item_id, price, volume on invoice_item
+  for each row execute procedure invoice_item_rollup_trigger();
+
+create or replace function invoice_rollup_trigger() returns trigger as $$
+begin
+  if exists (select 1 from invoice_item ii where ii.invoice_date = new.date and ii.invoice_id = new.invoice_id) then
+    perform mark_invoice_rollup_day(cast(old.date as date));
+    perform mark_invoice_rollup_day(cast(new.date as date));
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+create or replace function refresh_invoice_daily_rollup() returns table (refreshed_day date) as $$
+declare
+  v_days date[];
+begin
+  with dirty as (
+    delete from invoice_rollup_dirty_day d returning d.day
+  )
+  select coalesce(array_agg(dirty.day), '{}') into v_days from dirty;
+
+  delete from invoice_daily_rollup r where r.day = any (v_days);
+
+  insert into invoice_daily_rollup (day, organization_id, item_id, volume, amount, price_sum, item_count)
+  select d.day, i.organization_id, ii.item_id, sum(ii.volume), sum(cast(floor(ii.price * ii.volume + 0.5) as bigint)), sum(ii.price), count(*)
+  from unnest(v_days) as d(day)
+    inner join invoice_item ii on ii.invoice_date >= d.day and ii.invoice_date < d.day + 1
+    inner join invoice i on i.date = ii.invoice_date and i.invoice_id = ii.invoice_id
+  group by d.day, i.organization_id, ii.item_id;
+
+  return query select unnest(v_days);
+end;
+$$ language plpgsql;
@@ -0,0 +1,16 @@
+-- invoice_item date is mapped by entity, partitioned invoice_item is routed by written date before triggers run,
+-- so written date is kept only if it is date of invoice and null date is filled as before
+create or replace function invoice_item_date_trigger() returns trigger as $$
+begin
+  if tg_op = 'INSERT' or new.invoice_id is distinct from old.invoice_id or new.invoice_date is distinct from old.invoice_date then
+    select i.date into new.invoice_date from invoice i where i.invoice_id = new.invoice_id;
+  end if;
+  return new;
+end;
+$$ language plpgsql;
+
+drop trigger invoice_item_date on invoice_item;
+
+create trigger invoice_item_date
+  before insert or update of invoice_id, invoice_date on invoice_item
+  for each row execute procedure invoice_item_date_trigger();
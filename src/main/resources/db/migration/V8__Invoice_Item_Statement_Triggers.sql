@@ -0,0 +1,68 @@
+-- volumes and rollup days are updated once per statement from its transition tables instead of once per row,
+-- so batches and COPY touch each organization volume and each dirty day once, in key order
+drop trigger invoice_item_volume on invoice_item;
+drop trigger invoice_item_rollup on invoice_item;
+drop function invoice_item_volume_trigger();
+drop function invoice_item_rollup_trigger();
+
+create function invoice_item_summary_trigger() returns trigger as $$
+begin
+  if tg_op = 'INSERT' then
+    perform add_organization_volume(i.organization_id, sum(n.volume), count(*))
+    from new_items n
+      inner join invoice i on i.date = n.invoice_date and i.invoice_id = n.invoice_id
+    group by i.organization_id
+    order by i.organization_id;
+    perform mark_invoice_rollup_day(d.day)
+    from (select distinct cast(n.invoice_date as date) as day from new_items n) d
+    order by d.day;
+  elsif tg_op = 'DELETE' then
+    perform add_organization_volume(i.organization_id, -sum(o.volume), -count(*))
+    from old_items o
+      inner join invoice i on i.date = o.invoice_date and i.invoice_id = o.invoice_id
+    group by i.organization_id
+    order by i.organization_id;
+    perform mark_invoice_rollup_day(d.day)
+    from (select distinct cast(o.invoice_date as date) as day from old_items o) d
+    order by d.day;
+  else
+    -- update could not be limited to columns, so unchanged rows and date cascaded from invoice are skipped here
+    perform add_organization_volume(i.organization_id, sum(c.volume), sum(c.item_count))
+    from old_items o
+      full join new_items n on n.invoice_item_id = o.invoice_item_id
+      cross join lateral (values (o.invoice_date, o.invoice_id, -o.volume, -1), (n.invoice_date, n.invoice_id, n.volume, 1)) as c(invoice_date, invoice_id, volume, item_count)
+      inner join invoice i on i.date = c.invoice_date and i.invoice_id = c.invoice_id
+    where (o.invoice_id, o.volume) is distinct from (n.invoice_id, n.volume)
+    group by i.organization_id
+    having sum(c.volume) <> 0 or sum(c.item_count) <> 0
+    order by i.organization_id;
+    perform mark_invoice_rollup_day(d.day)
+    from (
+      select distinct cast(c.invoice_date as date) as day
+      from old_items o
+        full join new_items n on n.invoice_item_id = o.invoice_item_id
+        cross join lateral (values (o.invoice_date), (n.invoice_date)) as c(invoice_date)
+      where (o.invoice_id, o.invoice_date, o.item_id, o.price, o.volume) is distinct from (n.invoice_id, n.invoice_date, n.item_id, n.price, n.volume)
+        and c.invoice_date is not null
+    ) d
+    order by d.day;
+  end if;
+  return null;
+end;
+$$ language plpgsql;
+
+-- transition tables are not allowed for triggers of several events
+create trigger invoice_item_insert_summary
+  after insert on invoice_item
+  referencing new table as new_items
+  for each statement execute procedure invoice_item_summary_trigger();
+
+create trigger invoice_item_update_summary
+  after update on invoice_item
+  referencing old table as old_items new table as new_items
+  for each statement execute procedure invoice_item_summary_trigger();
+
+create trigger invoice_item_delete_summary
+  after delete on invoice_item
+  referencing old table as old_items
+  for each statement execute procedure invoice_item_summary_trigger();
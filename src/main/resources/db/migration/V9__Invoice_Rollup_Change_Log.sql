@@ -0,0 +1,37 @@
+-- days are marked by log of changes instead of set of days: insert ... on conflict do nothing did not wait
+-- for mark of uncommitted change, so refresh could delete committed mark of the same day and recalculate it
+-- before that change was committed, and the change was lost until the day was changed again
+alter table invoice_rollup_dirty_day drop constraint invoice_rollup_dirty_day_pk;
+alter table invoice_rollup_dirty_day add column change_id bigserial not null;
+alter table invoice_rollup_dirty_day add constraint invoice_rollup_dirty_day_pk primary key (change_id);
+
+-- every change adds its own mark, so writers of the same day do not lock each other
+create or replace function mark_invoice_rollup_day(p_day date) returns void as $$
+begin
+  insert into invoice_rollup_dirty_day (day) values (p_day);
+end;
+$$ language plpgsql;
+
+-- recalculates changed days from raw rows, only marks visible to refresh are deleted,
+-- so mark of change committed after it stays until next refresh
+create or replace function refresh_invoice_daily_rollup() returns table (refreshed_day date) as $$
+declare
+  v_days date[];
+begin
+  with dirty as (
+    delete from invoice_rollup_dirty_day d returning d.day
+  )
+  select coalesce(array_agg(distinct dirty.day), '{}') into v_days from dirty;
+
+  delete from invoice_daily_rollup r where r.day = any (v_days);
+
+  insert into invoice_daily_rollup (day, organization_id, item_id, volume, amount, price_sum, item_count)
+  select d.day, i.organization_id, ii.item_id, sum(ii.volume), sum(cast(floor(ii.price * ii.volume + 0.5) as bigint)), sum(ii.price), count(*)
+  from unnest(v_days) as d(day)
+    inner join invoice_item ii on ii.invoice_date >= d.day and ii.invoice_date < d.day + 1
+    inner join invoice i on i.date = ii.invoice_date and i.invoice_id = ii.invoice_id
+  group by d.day, i.organization_id, ii.item_id;
+
+  return query select unnest(v_days);
+end;
+$$ language plpgsql;
@@ -0,0 +1,152 @@
+-- converts invoice and invoice_item to tables partitioned by month of invoice date,
+-- applied only when partitioning is enabled (see Application)
+-- limitations of partitioned layout:
+--   keys include date, so invoices and invoice items are upserted and merged by id and date
+--   and invoice items should be written with date of their invoice, rows are routed by it before triggers run
+--   rows of months without partitions are kept in default partitions, maintain_invoice_partitions
+--   should run regularly, partition of month is not created while default partition has rows of it
+--   date of invoice with items could not be changed to another month before PostgreSQL 15,
+--   moved row is deleted and inserted, which is rejected by foreign key of items instead of cascade
+do $$
+begin
+  if current_setting('server_version_num')::int < 130000 then
+    raise exception 'Partitioning of invoice requires PostgreSQL 13 or later';
+  end if;
+end;
+$$;
+
+alter table invoice_item rename to invoice_item_heap;
+alter table invoice_item_heap rename constraint invoice_item_pk to invoice_item_heap_pk;
+alter table invoice_item_heap rename constraint invoice_item_uq to invoice_item_heap_uq;
+alter index invoice_item_invoice_date_idx rename to invoice_item_heap_invoice_date_idx;
+alter table invoice rename to invoice_heap;
+alter table invoice_heap rename constraint invoice_pk to invoice_heap_pk;
+alter table invoice_heap rename constraint invoice_date_uq to invoice_heap_date_uq;
+
+create table invoice (
+  invoice_id      varchar(36) not null,
+  date            timestamp   not null,
+  organization_id varchar(36) not null,
+  constraint invoice_pk primary key (invoice_id, date),
+  constraint invoice_organization_fk foreign key (organization_id) references organization (organization_id)
+) partition by range (date);
+
+create table invoice_item (
+  invoice_item_id varchar(36)    not null,
+  item_id         varchar(36)    not null,
+  invoice_id      varchar(36)    not null,
+  price           integer        not null,
+  volume          numeric(20, 3) not null,
+  invoice_date    timestamp      not null,
+  constraint invoice_item_pk primary key (invoice_item_id, invoice_date),
+  constraint invoice_item_uq unique (item_id, invoice_id, invoice_date),
+  constraint invoice_item_item_fk foreign key (item_id) references item (item_id),
+  constraint invoice_item_invoice_fk foreign key (invoice_date, invoice_id) references invoice (date, invoice_id) on update cascade
+) partition by range (invoice_date);
+
+create table invoice_default partition of invoice default;
+create table invoice_item_default partition of invoice_item default;
+
+create index invoice_date_idx on invoice (date);
+create index invoice_item_invoice_date_idx on invoice_item (invoice_date, invoice_id);
+
+-- creates partitions of month of invoice and invoice_item,
+-- month having rows in default partitions is skipped, since its partition could not be attached
+create function create_invoice_partitions(p_month date) returns void as $$
+declare
+  v_from   date := date_trunc('month', p_month);
+  v_to     date := date_trunc('month', p_month) + interval '1 month';
+  v_suffix text := to_char(p_month, '"_p"YYYY_MM');
+begin
+  if exists (select 1 from invoice_default i where i.date >= v_from and i.date < v_to) then
+    raise notice 'Partitions of % are not created, default partition has rows of it', to_char(p_month, 'YYYY-MM');
+    return;
+  end if;
+  execute format('create table if not exists %I partition of invoice for values from (%L) to (%L)', 'invoice' || v_suffix, v_from, v_to);
+  execute format('create table if not exists %I partition of invoice_item for values from (%L) to (%L)', 'invoice_item' || v_suffix, v_from, v_to);
+end;
+$$ language plpgsql;
+
+-- creates partitions of next months and detaches partitions older than retention period,
+-- detached tables are kept for archiving and their rows are removed from summaries,
+-- null or negative retention keeps all partitions
+create function maintain_invoice_partitions(p_months_ahead int, p_retention_months int) returns table (detached_partition text) as $$
+declare
+  v_month     date := date_trunc('month', localtimestamp);
+  v_partition record;
+  v_from      date;
+  v_to        date;
+begin
+  for i in 0..p_months_ahead loop
+    perform create_invoice_partitions(cast(v_month + make_interval(months => i) as date));
+  end loop;
+  if p_retention_months is null or p_retention_months < 0 then
+    return;
+  end if;
+  for v_partition in
+    select c.relname
+    from pg_inherits inh
+      inner join pg_class c on c.oid = inh.inhrelid
+    where inh.inhparent = 'invoice_item'::regclass
+      and c.relname ~ '^invoice_item_p[0-9]{4}_[0-9]{2}$'
+      and to_date(substr(c.relname, 15), 'YYYY_MM') < v_month - make_interval(months => p_retention_months)
+    order by c.relname
+  loop
+    v_from := to_date(substr(v_partition.relname, 15), 'YYYY_MM');
+    v_to := v_from + interval '1 month';
+    perform add_organization_volume(i.organization_id, -sum(ii.volume), -count(*))
+    from invoice_item ii
+      inner join invoice i on i.date = ii.invoice_date and i.invoice_id = ii.invoice_id
+    where ii.invoice_date >= v_from and ii.invoice_date < v_to
+    group by i.organization_id;
+    delete from invoice_daily_rollup r where r.day >= v_from and r.day < v_to;
+    delete from invoice_rollup_dirty_day d where d.day >= v_from and d.day < v_to;
+
+    execute format('alter table invoice_item detach partition %I', v_partition.relname);
+    execute format('alter table %I drop constraint invoice_item_invoice_fk', v_partition.relname);
+    execute format('alter table invoice detach partition %I', 'invoice' || substr(v_partition.relname, 13));
+    detached_partition := v_partition.relname;
+    return next;
+    detached_partition := 'invoice' || substr(v_partition.relname, 13);
+    return next;
+  end loop;
+end;
+$$ language plpgsql;
+
+do $$
+declare
+  v_month date;
+begin
+  for v_month in
+    select distinct cast(date_trunc('month', i.date) as date) from invoice_heap i
+  loop
+    perform create_invoice_partitions(v_month);
+  end loop;
+end;
+$$;
+select maintain_invoice_partitions(3, null);
+
+insert into invoice (invoice_id, date, organization_id)
+select invoice_id, date, organization_id from invoice_heap;
+insert into invoice_item (invoice_item_id, item_id, invoice_id, price, volume, invoice_date)
+select invoice_item_id, item_id, invoice_id, price, volume, invoice_date from invoice_item_heap;
+
+-- triggers are copied from heap tables, since partitioning may be enabled after later migrations changed them
+do $$
+declare
+  v_trigger record;
+begin
+  for v_trigger in
+    select c.relname, pg_get_triggerdef(t.oid) as definition
+    from pg_trigger t
+      inner join pg_class c on c.oid = t.tgrelid
+    where c.relname in ('invoice_heap', 'invoice_item_heap') and not t.tgisinternal
+    order by c.relname, t.tgname
+  loop
+    execute regexp_replace(v_trigger.definition, ' ON \S+ ', format(' ON %I ', replace(v_trigger.relname, '_heap', '')));
+  end loop;
+end;
+$$;
+
+drop table invoice_item_heap;
+drop table invoice_heap;
@@ -0,0 +1,106 @@
+package com.zzzkvidi4.storage;
+
+import com.opentable.db.postgres.embedded.ConnectionInfo;
+import com.opentable.db.postgres.embedded.FlywayPreparer;
+import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
+import com.opentable.db.postgres.junit.PreparedDbRule;
+import com.zzzkvidi4.storage.generator.DataGenerator;
+import com.zzzkvidi4.storage.generator.GenerationResult;
+import com.zzzkvidi4.storage.generator.GeneratorSettings;
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.repository.ItemRepository;
+import com.zzzkvidi4.storage.repository.OrganizationRepository;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Month;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static org.junit.Assert.*;
+
+public final class DataGeneratorTests {
+    @NotNull
+    private static final String QUERY_SUFFIX = " WHERE invoice_id LIKE 'g%' ORDER BY invoice_id";
+    @NotNull
+    private static final GeneratorSettings SETTINGS = GeneratorSettings.builder()
+            .seed(7)
+            .idPrefix("g")
+            .organizationCount(50)
+            .itemCount(200)
+            .invoiceCount(2000)
+            .itemsPerInvoice(5)
+            .itemSkew(1.2)
+            .seasonality(0.8)
+            .build();
+
+    @Rule
+    @NotNull
+    public PreparedDbRule db = EmbeddedPostgresRules.preparedDatabase(FlywayPreparer.forClasspathLocation("db/migration"));
+    @Rule
+    @NotNull
+    public PreparedDbRule otherDb = EmbeddedPostgresRules.preparedDatabase(FlywayPreparer.forClasspathLocation("db/migration"));
+
+    @Test
+    public void whenGeneratedWithSameSeedDataIsTheSame() {
+        DataSource dataSource = createDataSource(db);
+        DataSource otherDataSource = createDataSource(otherDb);
+        GenerationResult result = createGenerator(dataSource).generate(SETTINGS);
+        GenerationResult otherResult = createGenerator(otherDataSource).generate(SETTINGS);
+        assertEquals(result.toString(), otherResult.toString());
+        assertEquals(50, result.getOrganizationCount());
+        assertEquals(200, result.getItemCount());
+        assertEquals(2000, result.getInvoiceCount());
+        assertTrue(result.getInvoiceItemCount() > 2000 * 4 && result.getInvoiceItemCount() < 2000 * 6);
+
+        InvoiceRepository invoiceRepository = new InvoiceRepository(dataSource);
+        InvoiceRepository otherInvoiceRepository = new InvoiceRepository(otherDataSource);
+        assertEquals(invoiceRepository.findAllByQuery("SELECT * FROM invoice" + QUERY_SUFFIX), otherInvoiceRepository.findAllByQuery("SELECT * FROM invoice" + QUERY_SUFFIX));
+        String invoiceItemQuery = "SELECT * FROM invoice_item" + QUERY_SUFFIX + ", invoice_item_id";
+        assertEquals(new InvoiceItemRepository(dataSource).findAllByQuery(invoiceItemQuery), new InvoiceItemRepository(otherDataSource).findAllByQuery(invoiceItemQuery));
+    }
+
+    @Test
+    public void whenGeneratedDataIsSkewed() {
+        DataSource dataSource = createDataSource(db);
+        createGenerator(dataSource).generate(SETTINGS);
+
+        List<Invoice> invoices = new InvoiceRepository(dataSource).findAllByQuery("SELECT * FROM invoice" + QUERY_SUFFIX);
+        // 5 hot organizations of 50 issue about 80% of invoices
+        long hotInvoices = invoices.stream().filter(i -> Integer.parseInt(i.getOrganization().substring(1)) < 5).count();
+        assertEquals(0.8, hotInvoices / (double) invoices.size(), 0.05);
+        // peak of season is in December
+        Map<Month, Long> invoicesByMonth = invoices.stream()
+                .collect(groupingBy(i -> i.getDate().atZone(ZoneId.systemDefault()).getMonth(), counting()));
+        assertTrue(invoicesByMonth.get(Month.DECEMBER) > 3 * invoicesByMonth.get(Month.JUNE));
+
+        Map<String, Long> invoiceItemsByItem = new InvoiceItemRepository(dataSource).findAllByQuery("SELECT * FROM invoice_item" + QUERY_SUFFIX)
+                .stream()
+                .collect(groupingBy(InvoiceItem::getItemId, counting()));
+        assertTrue(invoiceItemsByItem.get("g0") > 10 * invoiceItemsByItem.getOrDefault("g100", 0L));
+    }
+
+    @NotNull
+    private static DataGenerator createGenerator(@NotNull DataSource dataSource) {
+        return new DataGenerator(
+                new OrganizationRepository(dataSource),
+                new ItemRepository(dataSource),
+                new InvoiceRepository(dataSource),
+                new InvoiceItemRepository(dataSource)
+        );
+    }
+
+    @NotNull
+    private static DataSource createDataSource(@NotNull PreparedDbRule rule) {
+        ConnectionInfo connectionInfo = rule.getConnectionInfo();
+        return new DataSource("jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(), "postgres", "postgres");
+    }
+}
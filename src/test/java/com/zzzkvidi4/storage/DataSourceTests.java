@@ -0,0 +1,297 @@
+package com.zzzkvidi4.storage;
+
+import com.opentable.db.postgres.embedded.ConnectionInfo;
+import com.opentable.db.postgres.embedded.FlywayPreparer;
+import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
+import com.opentable.db.postgres.junit.PreparedDbRule;
+import com.zzzkvidi4.storage.model.Organization;
+import com.zzzkvidi4.storage.repository.ColumnType;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.DataSourceSettings;
+import com.zzzkvidi4.storage.repository.OrganizationRepository;
+import com.zzzkvidi4.storage.repository.ParameterRedaction;
+import com.zzzkvidi4.storage.repository.PoolStatistics;
+import com.zzzkvidi4.storage.repository.SlowQuerySettings;
+import com.zzzkvidi4.storage.repository.SqlArray;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public final class DataSourceTests {
+    @Rule
+    @NotNull
+    public PreparedDbRule db = EmbeddedPostgresRules.preparedDatabase(FlywayPreparer.forClasspathLocation("db/migration"));
+    @Rule
+    @NotNull
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void whenRepositoryCalledManyTimesConnectionIsReused() {
+        try (DataSource dataSource = createDataSource(DataSourceSettings.builder().maximumPoolSize(2).build())) {
+            OrganizationRepository organizationRepository = new OrganizationRepository(dataSource);
+            for (int i = 0; i < 10; ++i) {
+                assertTrue(organizationRepository.findById("1").isPresent());
+            }
+            PoolStatistics statistics = dataSource.getStatistics();
+            assertEquals(0, statistics.getActive());
+            assertEquals(1, statistics.getIdle());
+            assertEquals(10, statistics.getAcquireCount());
+        }
+    }
+
+    @Test
+    public void whenAsyncRequestsRunTheyUseExecutorOfDataSource() {
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            DataSourceSettings settings = DataSourceSettings.builder()
+                    .asyncPoolSize(2)
+                    .virtualThreads(virtualThreads)
+                    .build();
+            CompletableFuture<Optional<Organization>> organization;
+            try (DataSource dataSource = createDataSource(settings)) {
+                OrganizationRepository organizationRepository = new OrganizationRepository(dataSource);
+                organization = organizationRepository.findByIdAsync("1");
+                CompletableFuture<List<Organization>> organizations = organizationRepository.findAllAsync();
+                assertEquals(organizationRepository.findAll(), organizations.join());
+                assertEquals(organizationRepository.findById("1"), organization.join());
+            }
+            assertTrue(organization.isDone());
+        }
+    }
+
+    @Test
+    public void whenDataSourceIsClosedAsyncRequestFails() {
+        DataSource dataSource = createDataSource(DataSourceSettings.DEFAULT);
+        dataSource.close();
+        CompletableFuture<Optional<Organization>> organization = new OrganizationRepository(dataSource).findByIdAsync("1");
+        assertTrue(organization.isCompletedExceptionally());
+    }
+
+    @Test
+    public void whenPoolExhaustedAcquireTimesOut() throws SQLException {
+        DataSourceSettings settings = DataSourceSettings.builder()
+                .maximumPoolSize(1)
+                .acquireTimeoutMillis(100)
+                .build();
+        try (DataSource dataSource = createDataSource(settings); Connection ignored = dataSource.getConnection()) {
+            assertEquals(1, dataSource.getStatistics().getActive());
+            try {
+                dataSource.getConnection();
+                fail();
+            } catch (SQLException e) {
+                assertEquals(0, dataSource.getStatistics().getWaiters());
+            }
+        }
+    }
+
+    @Test
+    public void whenConnectionIdleTooLongItIsEvicted() throws SQLException, InterruptedException {
+        try (DataSource dataSource = createDataSource(DataSourceSettings.builder().idleTimeoutMillis(200).build())) {
+            dataSource.getConnection().close();
+            assertEquals(1, dataSource.getStatistics().getIdle());
+            // no request is made, connection is evicted by reaper of pool
+            Thread.sleep(1000);
+            assertEquals(0, dataSource.getStatistics().getIdle());
+        }
+    }
+
+    @Test
+    public void whenSameQueryPreparedAgainStatementIsReused() throws SQLException {
+        try (DataSource dataSource = createDataSource(DataSourceSettings.builder().maximumPoolSize(1).build())) {
+            PreparedStatement first;
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+                first = statement.unwrap(PreparedStatement.class);
+                statement.setFetchSize(10);
+                statement.setQueryTimeout(5);
+                statement.setMaxRows(1);
+            }
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT 1");
+                 PreparedStatement nested = connection.prepareStatement("SELECT 1")) {
+                assertSame(first, statement.unwrap(PreparedStatement.class));
+                assertNotSame(first, nested.unwrap(PreparedStatement.class));
+                // limits of previous borrower are reset
+                assertEquals(0, statement.getFetchSize());
+                assertEquals(0, statement.getQueryTimeout());
+                assertEquals(0, statement.getMaxRows());
+            }
+        }
+    }
+
+    @Test
+    public void whenQueryIsSlowItIsLoggedAndPlanIsWrittenToRollingFile() throws IOException {
+        Path planFile = temporaryFolder.getRoot().toPath().resolve("plans.log");
+        DataSourceSettings settings = DataSourceSettings.builder()
+                // plan is captured on calling thread, so it is written when query returns
+                .asyncExecutor(Runnable::run)
+                .slowQuerySettings(SlowQuerySettings.builder()
+                        .thresholdMillis(0)
+                        .parameterRedaction(ParameterRedaction.TEXT)
+                        .explainSampleRate(1)
+                        .planFile(planFile)
+                        .maximumFileSize(1)
+                        .maximumFileCount(1)
+                        .build())
+                .build();
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = collectingHandler(records);
+        Logger logger = Logger.getLogger("com.zzzkvidi4.storage.repository.SlowQueryLog");
+        logger.addHandler(handler);
+        try (DataSource dataSource = createDataSource(settings)) {
+            OrganizationRepository organizationRepository = new OrganizationRepository(dataSource);
+            String sql = "SELECT * FROM organization WHERE name <> ? AND organization_id = ANY (?) AND length(name) > ?";
+            List<Organization> organizations = organizationRepository.findAllByQuery(sql, "secret", SqlArray.of(ColumnType.STRING, Arrays.asList("1", "2")), 0L);
+            assertEquals(2, organizations.size());
+            String plan = new String(Files.readAllBytes(planFile), StandardCharsets.UTF_8);
+            assertTrue(plan.contains("SQL: " + sql));
+            assertTrue(plan.contains("Arguments: [<varchar>, varchar[2], 0]"));
+            assertTrue(plan.contains("actual time"));
+            assertFalse(plan.contains("secret"));
+
+            organizationRepository.findAll();
+            organizationRepository.findAll();
+        } finally {
+            logger.removeHandler(handler);
+        }
+        assertEquals(3, records.size());
+        assertTrue(records.get(0).getMessage().contains("processed 2 rows"));
+        assertFalse(records.get(0).getMessage().contains("secret"));
+        // every plan does not fit into maximum size, so only last plan and one rotated are kept
+        assertTrue(new String(Files.readAllBytes(planFile), StandardCharsets.UTF_8).contains("SELECT * FROM organization\n"));
+        assertTrue(Files.exists(planFile.resolveSibling("plans.log.1")));
+        assertFalse(Files.exists(planFile.resolveSibling("plans.log.2")));
+    }
+
+    @Test
+    public void whenSlowQueryLogIsEnabledEveryStatementIsLogged() {
+        DataSourceSettings settings = DataSourceSettings.builder()
+                .slowQuerySettings(SlowQuerySettings.builder()
+                        .thresholdMillis(0)
+                        .explainSampleRate(0)
+                        .planFile(temporaryFolder.getRoot().toPath().resolve("plans.log"))
+                        .build())
+                .build();
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = collectingHandler(records);
+        Logger logger = Logger.getLogger("com.zzzkvidi4.storage.repository.SlowQueryLog");
+        logger.addHandler(handler);
+        try (DataSource dataSource = createDataSource(settings)) {
+            OrganizationRepository organizationRepository = new OrganizationRepository(dataSource);
+            Organization organization = new Organization("100", "logged", "100000000", "100");
+            assertTrue(organizationRepository.create(organization));
+            assertTrue(organizationRepository.findById("100").isPresent());
+            assertTrue(organizationRepository.update(organization));
+            assertTrue(organizationRepository.deleteById("100"));
+            organizationRepository.createAll(Collections.singletonList(organization));
+            organizationRepository.upsertAll(Collections.singletonList(organization));
+            organizationRepository.copyIn(Collections.singletonList(new Organization("101", "copied", "100000001", "101")));
+            try (Stream<Organization> organizations = organizationRepository.stream("SELECT * FROM organization WHERE organization_id = ANY (?)", SqlArray.of(ColumnType.STRING, Arrays.asList("1", "2")))) {
+                assertEquals(2, organizations.count());
+                // cursor is measured until it is closed
+                assertEquals(7, records.size());
+            }
+        } finally {
+            logger.removeHandler(handler);
+        }
+        String[] statements = {
+                "SQL: INSERT INTO organization ",
+                "SQL: SELECT * FROM organization WHERE organization_id = ?",
+                "SQL: UPDATE organization ",
+                "SQL: DELETE FROM organization ",
+                "SQL: INSERT INTO organization ",
+                "SQL: WITH upserted AS (INSERT INTO organization ",
+                "SQL: COPY organization ",
+                "SQL: SELECT * FROM organization WHERE organization_id = ANY (?)"
+        };
+        assertEquals(statements.length, records.size());
+        for (int i = 0; i < statements.length; ++i) {
+            assertTrue(records.get(i).getMessage(), records.get(i).getMessage().contains(statements[i]));
+        }
+        assertTrue(records.get(0).getMessage().contains("Arguments: [<varchar>, <varchar>, <varchar>, <varchar>]"));
+        assertTrue(records.get(2).getMessage().contains("Arguments: [<varchar>, <varchar>, <varchar>, <varchar>]"));
+        assertTrue(records.get(4).getMessage().contains("Arguments: batch"));
+        assertTrue(records.get(5).getMessage().contains("ON CONFLICT"));
+        assertTrue(records.get(7).getMessage().contains("processed 2 rows"));
+    }
+
+    @Test
+    public void whenModifyingStatementIsSlowItsPlanIsCapturedWithoutAnalyze() throws IOException {
+        Path planFile = temporaryFolder.getRoot().toPath().resolve("plans.log");
+        DataSourceSettings settings = DataSourceSettings.builder()
+                .asyncExecutor(Runnable::run)
+                .slowQuerySettings(SlowQuerySettings.builder()
+                        .thresholdMillis(0)
+                        .parameterRedaction(ParameterRedaction.NONE)
+                        .explainSampleRate(1)
+                        .planFile(planFile)
+                        .build())
+                .build();
+        try (DataSource dataSource = createDataSource(settings)) {
+            OrganizationRepository organizationRepository = new OrganizationRepository(dataSource);
+            Organization organization = organizationRepository.findById("1").orElseThrow(AssertionError::new);
+            assertTrue(new String(Files.readAllBytes(planFile), StandardCharsets.UTF_8).contains("actual time"));
+            Files.delete(planFile);
+            organization.setName("ibm 2");
+            assertTrue(organizationRepository.update(organization));
+        }
+        String plan = new String(Files.readAllBytes(planFile), StandardCharsets.UTF_8);
+        assertTrue(plan.contains("SQL: UPDATE organization SET"));
+        assertTrue(plan.contains("Arguments: ['ibm 2', "));
+        assertTrue(plan.contains("Update on organization"));
+        assertFalse(plan.contains("actual time"));
+    }
+
+    @Test(expected = SQLException.class)
+    public void whenConnectionClosedItCannotBeUsed() throws SQLException {
+        try (DataSource dataSource = createDataSource(DataSourceSettings.DEFAULT)) {
+            Connection connection = dataSource.getConnection();
+            connection.close();
+            connection.createStatement();
+        }
+    }
+
+    @NotNull
+    private static Handler collectingHandler(@NotNull List<LogRecord> records) {
+        return new Handler() {
+            @Override
+            public void publish(@NotNull LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @NotNull
+    private DataSource createDataSource(@NotNull DataSourceSettings settings) {
+        ConnectionInfo connectionInfo = db.getConnectionInfo();
+        return new DataSource("jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(), "postgres", "postgres", settings);
+    }
+}
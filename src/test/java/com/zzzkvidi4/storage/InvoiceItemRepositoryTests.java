@@ -0,0 +1,204 @@
+package com.zzzkvidi4.storage;
+
+import com.opentable.db.postgres.embedded.ConnectionInfo;
+import com.opentable.db.postgres.embedded.FlywayPreparer;
+import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
+import com.opentable.db.postgres.junit.PreparedDbRule;
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
+import com.zzzkvidi4.storage.model.OrganizationWithItem;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.EntityMetadataRegistry;
+import com.zzzkvidi4.storage.repository.EntitySnapshot;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.repository.UpsertOptions;
+import com.zzzkvidi4.storage.repository.UpsertResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public final class InvoiceItemRepositoryTests {
+    @Rule
+    @NotNull
+    public PreparedDbRule db = EmbeddedPostgresRules.preparedDatabase(FlywayPreparer.forClasspathLocation("db/migration"));
+    @Nullable
+    private InvoiceRepository invoiceRepository;
+    @Nullable
+    private InvoiceItemRepository invoiceItemRepository;
+
+    @Before
+    public void setUp() {
+        ConnectionInfo connectionInfo = db.getConnectionInfo();
+        DataSource dataSource = new DataSource("jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(), "postgres", "postgres");
+        invoiceRepository = new InvoiceRepository(dataSource);
+        invoiceItemRepository = new InvoiceItemRepository(dataSource);
+    }
+
+    @Test
+    public void whenMetadataIsGeneratedItIsUsed() {
+        assertEquals("InvoiceItem_Metadata", EntityMetadataRegistry.get(InvoiceItem.class).getClass().getSimpleName());
+        assertEquals("OrganizationWithItem_Metadata", EntityMetadataRegistry.get(OrganizationWithItem.class).getClass().getSimpleName());
+    }
+
+    @Test
+    public void whenFindByIdPrimitiveColumnsAreRead() {
+        Optional<InvoiceItem> invoiceItemOpt = invoiceItemRepository.findById("12");
+        assertTrue(invoiceItemOpt.isPresent());
+        assertEquals(new InvoiceItem("12", "13", "7", 100, 200, dateOf("13")), invoiceItemOpt.get());
+    }
+
+    @Test
+    public void whenCreateAndUpdateEntityWithPrimitivesItIsStored() {
+        InvoiceItem invoiceItem = new InvoiceItem("100", "1", "3", 42, 1.5, dateOf("1"));
+        assertTrue(invoiceItemRepository.create(invoiceItem));
+        invoiceItem.setPrice(43);
+        invoiceItem.setVolume(2.25);
+        assertTrue(invoiceItemRepository.update(invoiceItem));
+        assertEquals(Optional.of(invoiceItem), invoiceItemRepository.findById("100"));
+    }
+
+    @Test
+    public void whenWrittenWithoutOrWithWrongDateDateOfInvoiceIsStored() {
+        InvoiceItem invoiceItem = new InvoiceItem("100", "1", "3", 42, 1.5);
+        assertTrue(invoiceItemRepository.create(invoiceItem));
+        assertEquals(dateOf("1"), invoiceItemRepository.findById("100").map(InvoiceItem::getInvoiceDate).orElse(null));
+
+        invoiceItem.setInvoiceId("4");
+        invoiceItem.setInvoiceDate(dateOf("1"));
+        assertTrue(invoiceItemRepository.update(invoiceItem));
+        assertEquals(dateOf("4"), invoiceItemRepository.findById("100").map(InvoiceItem::getInvoiceDate).orElse(null));
+
+        invoiceItem.setInvoiceDate(null);
+        assertTrue(invoiceItemRepository.update(invoiceItem));
+        assertEquals(dateOf("4"), invoiceItemRepository.findById("100").map(InvoiceItem::getInvoiceDate).orElse(null));
+    }
+
+    @Test
+    public void whenWrittenInBatchesEveryRowIsAffected() {
+        List<InvoiceItem> invoiceItems = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            invoiceItems.add(new InvoiceItem("batch " + i, String.valueOf(i + 2), "1", i, i * 1.5, dateOf(String.valueOf(i + 2))));
+        }
+        int[] created = invoiceItemRepository.createAll(invoiceItems);
+        assertEquals(invoiceItems.size(), created.length);
+        invoiceItems.forEach(ii -> assertEquals(Optional.of(ii), invoiceItemRepository.findById(ii.getId())));
+
+        invoiceItems.forEach(ii -> ii.setPrice(ii.getPrice() + 1));
+        invoiceItems.add(new InvoiceItem("absent", "1", "1", 0, 0));
+        assertArrayEquals(new int[]{1, 1, 1, 1, 1, 0}, invoiceItemRepository.updateAll(invoiceItems));
+        assertEquals(1, invoiceItemRepository.findById("batch 0").map(InvoiceItem::getPrice).orElse(-1).intValue());
+
+        List<String> ids = invoiceItems.stream().map(InvoiceItem::getId).collect(toList());
+        assertArrayEquals(new int[]{1, 1, 1, 1, 1, 0}, invoiceItemRepository.deleteAllById(ids));
+        assertFalse(invoiceItemRepository.findById("batch 0").isPresent());
+    }
+
+    @Test
+    public void whenCopiedInRowsAreLoaded() {
+        List<InvoiceItem> invoiceItems = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            invoiceItems.add(new InvoiceItem("copy\t" + i, String.valueOf(i + 2), "1", i, i * 1.5, dateOf(String.valueOf(i + 2))));
+        }
+        assertEquals(invoiceItems.size(), invoiceItemRepository.copyIn(invoiceItems));
+        invoiceItems.forEach(ii -> assertEquals(Optional.of(ii), invoiceItemRepository.findById(ii.getId())));
+    }
+
+    @Test
+    public void whenCopiedInWithMergeExistingRowsAreUpdated() {
+        InvoiceItem existing = new InvoiceItem("12", "13", "7", 101, 201.5, dateOf("13"));
+        InvoiceItem created = new InvoiceItem("merged", "2", "1", 5, 0.5, dateOf("2"));
+        assertEquals(2, invoiceItemRepository.copyInMerging(Arrays.asList(existing, created)));
+        assertEquals(Optional.of(existing), invoiceItemRepository.findById("12"));
+        assertEquals(Optional.of(created), invoiceItemRepository.findById("merged"));
+    }
+
+    @Test
+    public void whenUpdatedPartiallyOnlyChangedColumnsAreWritten() {
+        InvoiceItem first = invoiceItemRepository.findById("12").orElseThrow(AssertionError::new);
+        InvoiceItem second = invoiceItemRepository.findById("12").orElseThrow(AssertionError::new);
+        EntitySnapshot<InvoiceItem> firstSnapshot = invoiceItemRepository.snapshot(first);
+        EntitySnapshot<InvoiceItem> secondSnapshot = invoiceItemRepository.snapshot(second);
+        assertFalse(invoiceItemRepository.updateChanged(first, firstSnapshot));
+
+        first.setPrice(101);
+        second.setVolume(201.5);
+        assertTrue(invoiceItemRepository.updateChanged(first, firstSnapshot));
+        assertTrue(invoiceItemRepository.updateChanged(second, secondSnapshot));
+        assertEquals(Optional.of(new InvoiceItem("12", "13", "7", 101, 201.5, dateOf("13"))), invoiceItemRepository.findById("12"));
+
+        second.setPrice(5);
+        assertTrue(invoiceItemRepository.updateColumns(second, Collections.singletonList("price")));
+        assertEquals(Optional.of(new InvoiceItem("12", "13", "7", 5, 201.5, dateOf("13"))), invoiceItemRepository.findById("12"));
+        assertFalse(invoiceItemRepository.updateColumns(second, Collections.emptyList()));
+    }
+
+    @Test
+    public void whenUpsertedNewRowsAreInsertedAndExistingAreUpdated() {
+        InvoiceItem existing = new InvoiceItem("12", "13", "7", 101, 201.5, dateOf("13"));
+        InvoiceItem created = new InvoiceItem("upserted", "2", "1", 5, 0.5, dateOf("2"));
+        UpsertResult result = invoiceItemRepository.upsertAll(Arrays.asList(existing, created));
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(Optional.of(existing), invoiceItemRepository.findById("12"));
+        assertEquals(Optional.of(created), invoiceItemRepository.findById("upserted"));
+
+        // conflicts with row 12 by item and invoice, so row keeps its id
+        InvoiceItem sameItem = new InvoiceItem("same item", "13", "7", 7, 1);
+        InvoiceItem lastSameItem = new InvoiceItem("last same item", "13", "7", 9, 3);
+        result = invoiceItemRepository.upsertAll(Arrays.asList(sameItem, lastSameItem), UpsertOptions.builder().constraint("invoice_item_uq").build());
+        assertEquals(0, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getSkipped());
+        assertEquals(Optional.of(new InvoiceItem("12", "13", "7", 9, 3, dateOf("13"))), invoiceItemRepository.findById("12"));
+        assertFalse(invoiceItemRepository.findById("last same item").isPresent());
+
+        result = invoiceItemRepository.upsertAll(Collections.singletonList(sameItem), UpsertOptions.builder().constraint("invoice_item_uq").ignoreExisting(true).build());
+        assertEquals(0, result.getInserted() + result.getUpdated());
+        assertEquals(Optional.of(new InvoiceItem("12", "13", "7", 9, 3, dateOf("13"))), invoiceItemRepository.findById("12"));
+    }
+
+    @Test
+    public void whenPrimaryKeyIncludesUnmappedColumnUpsertByItIsRejected() throws SQLException {
+        try (Connection connection = db.getTestDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE invoice_item ADD COLUMN revision integer NOT NULL DEFAULT 0, " +
+                    "DROP CONSTRAINT invoice_item_pk, ADD CONSTRAINT invoice_item_pk PRIMARY KEY (invoice_item_id, revision)");
+        }
+        InvoiceItem existing = new InvoiceItem("12", "13", "7", 101, 201.5, dateOf("13"));
+        try {
+            invoiceItemRepository.upsertAll(Collections.singletonList(existing));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("revision"));
+        }
+        try {
+            invoiceItemRepository.copyInMerging(Collections.singletonList(existing));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("revision"));
+        }
+        assertEquals(1, invoiceItemRepository.upsertAll(Collections.singletonList(existing), UpsertOptions.builder().constraint("invoice_item_uq").build()).getUpdated());
+        assertEquals(Optional.of(existing), invoiceItemRepository.findById("12"));
+    }
+
+    @NotNull
+    private Instant dateOf(@NotNull String invoiceId) {
+        return invoiceRepository.findById(invoiceId).map(Invoice::getDate).orElseThrow(AssertionError::new);
+    }
+}
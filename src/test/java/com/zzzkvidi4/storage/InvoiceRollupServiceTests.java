@@ -0,0 +1,153 @@
+package com.zzzkvidi4.storage;
+
+import com.opentable.db.postgres.embedded.ConnectionInfo;
+import com.opentable.db.postgres.embedded.FlywayPreparer;
+import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
+import com.opentable.db.postgres.junit.PreparedDbRule;
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.service.InvoiceRollupService;
+import com.zzzkvidi4.storage.service.InvoiceService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public final class InvoiceRollupServiceTests {
+    @NotNull
+    private static final LocalDate START = LocalDate.of(2000, 1, 1);
+    @NotNull
+    private static final LocalDate END = LocalDate.of(2030, 1, 1);
+    @Rule
+    @NotNull
+    public PreparedDbRule db = EmbeddedPostgresRules.preparedDatabase(FlywayPreparer.forClasspathLocation("db/migration"));
+    @Nullable
+    private InvoiceRepository invoiceRepository;
+    @Nullable
+    private InvoiceItemRepository invoiceItemRepository;
+    @Nullable
+    private InvoiceService invoiceService;
+    @Nullable
+    private InvoiceRollupService invoiceRollupService;
+
+    @Before
+    public void setUp() {
+        ConnectionInfo connectionInfo = db.getConnectionInfo();
+        DataSource dataSource = new DataSource("jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(), "postgres", "postgres");
+        invoiceRepository = new InvoiceRepository(dataSource);
+        invoiceItemRepository = new InvoiceItemRepository(dataSource);
+        invoiceService = new InvoiceService(invoiceRepository, invoiceItemRepository);
+        invoiceRollupService = new InvoiceRollupService(invoiceRepository);
+    }
+
+    @Test
+    public void whenRollupIsRefreshedReportsEqualReportsOfRawRows() {
+        assertRollupEqualsRawRows();
+
+        Invoice invoice = new Invoice("rollup", LocalDateTime.of(2019, 8, 6, 12, 0).atZone(ZoneId.systemDefault()).toInstant(), "3");
+        assertTrue(invoiceRepository.create(invoice));
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("rollup", "rollup", "1", 3, 0.5)));
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("rollup 2", "rollup", "2", 7, 11)));
+        assertTrue(invoiceItemRepository.deleteById("12"));
+        invoiceRollupService.refresh();
+        assertRollupEqualsRawRows();
+
+        invoice.setDate(LocalDateTime.of(2019, 8, 2, 12, 0).atZone(ZoneId.systemDefault()).toInstant());
+        assertTrue(invoiceRepository.update(invoice));
+        invoiceRollupService.refresh();
+        assertRollupEqualsRawRows();
+        assertNull(invoiceRollupService.getAveragePrice(LocalDate.of(1970, 1, 1), LocalDate.of(1971, 1, 1)));
+    }
+
+    @Test
+    public void whenRollupIsRefreshedOnlyChangedDaysAreRecalculated() {
+        assertEquals(Collections.emptyList(), invoiceRollupService.refresh());
+        // invoice 6 is of 2019-08-06
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("rollup", "6", "1", 10, 2)));
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("rollup 2", "6", "2", 10, 2)));
+        assertEquals(Collections.singletonList(LocalDate.of(2019, 8, 6)), invoiceRollupService.refresh());
+        assertEquals(Collections.emptyList(), invoiceRollupService.refresh());
+        assertEquals(34320, invoiceRollupService.getDailyInvoiceSummary(LocalDate.of(2019, 8, 6), LocalDate.of(2019, 8, 7)).getInvoiceSummary().getPrice());
+    }
+
+    @Test
+    public void whenChangeIsCommittedDuringRefreshItsDayIsRefreshedAgain() throws SQLException {
+        LocalDate day = LocalDate.of(2019, 8, 6);
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("rollup", "6", "1", 10, 2)));
+        try (Connection connection = db.getTestDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            // the same day as committed mark, which is deleted by refresh before this change is committed
+            statement.executeUpdate("INSERT INTO invoice_item (invoice_item_id, item_id, invoice_id, price, volume) VALUES ('rollup 2', '2', '6', 10, 2)");
+            assertEquals(Collections.singletonList(day), invoiceRollupService.refresh());
+            connection.commit();
+        }
+        assertEquals(Collections.singletonList(day), invoiceRollupService.refresh());
+        assertRollupEqualsRawRows();
+    }
+
+    @Test
+    public void whenItemsAreWrittenInBatchesRollupEqualsRawRows() {
+        List<InvoiceItem> invoiceItems = new ArrayList<>();
+        for (int i = 0; i < 30; ++i) {
+            invoiceItems.add(new InvoiceItem("batch " + i, String.valueOf(4 + i % 10), String.valueOf(1 + i / 10), i, 1.5 * i));
+        }
+        assertEquals(invoiceItems.size(), invoiceItemRepository.copyIn(invoiceItems));
+        assertEquals(9, invoiceRollupService.refresh().size());
+        assertRollupEqualsRawRows();
+
+        for (int i = 0; i < 10; ++i) {
+            invoiceItems.get(i).setVolume(0.5 * i);
+            invoiceItems.get(10 + i).setPrice(100 + i);
+        }
+        for (int i = 0; i < 4; ++i) {
+            invoiceItems.get(20 + i).setInvoiceId("1");
+            invoiceItems.get(20 + i).setItemId(String.valueOf(4 + i));
+        }
+        invoiceItemRepository.updateAll(invoiceItems);
+        invoiceRollupService.refresh();
+        assertRollupEqualsRawRows();
+
+        // rows which are not changed by update do not mark their days
+        invoiceItemRepository.updateAll(invoiceItems);
+        assertEquals(Collections.emptyList(), invoiceRollupService.refresh());
+
+        invoiceItemRepository.deleteAllById(invoiceItems.stream().map(InvoiceItem::getId).collect(Collectors.toList()));
+        invoiceRollupService.refresh();
+        assertRollupEqualsRawRows();
+    }
+
+    private void assertRollupEqualsRawRows() {
+        invoiceService.invalidateDailySummaries();
+        Map<LocalDate, Optional<InvoiceService.InvoiceSummary>> expected = invoiceService.getDailyInvoiceSummary(START, END).getSummary();
+        Map<LocalDate, Optional<InvoiceService.InvoiceSummary>> actual = invoiceRollupService.getDailyInvoiceSummary(START, END).getSummary();
+        assertEquals(expected.keySet(), actual.keySet());
+        for (LocalDate day : expected.keySet()) {
+            InvoiceService.InvoiceSummary expectedSummary = expected.get(day).orElseThrow(AssertionError::new);
+            InvoiceService.InvoiceSummary actualSummary = actual.get(day).orElseThrow(AssertionError::new);
+            assertEquals(expectedSummary.getPrice(), actualSummary.getPrice());
+            assertEquals(expectedSummary.getVolume(), actualSummary.getVolume(), 0.001);
+        }
+        assertEquals(invoiceService.getAveragePrice(START, END), invoiceRollupService.getAveragePrice(START, END));
+        assertEquals(invoiceService.getAveragePrice(LocalDate.of(2019, 8, 1), LocalDate.of(2019, 8, 7)), invoiceRollupService.getAveragePrice(LocalDate.of(2019, 8, 1), LocalDate.of(2019, 8, 7)));
+    }
+}
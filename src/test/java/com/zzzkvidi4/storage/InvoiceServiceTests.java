@@ -4,6 +4,8 @@ import com.opentable.db.postgres.embedded.ConnectionInfo;
 import com.opentable.db.postgres.embedded.FlywayPreparer;
 import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
 import com.opentable.db.postgres.junit.PreparedDbRule;
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
 import com.zzzkvidi4.storage.repository.DataSource;
 import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
 import com.zzzkvidi4.storage.repository.InvoiceRepository;
@@ -15,8 +17,13 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import static java.util.stream.Collectors.toMap;
 import static org.junit.Assert.*;
 
 public final class InvoiceServiceTests {
@@ -25,12 +32,18 @@ public final class InvoiceServiceTests {
     public PreparedDbRule db = EmbeddedPostgresRules.preparedDatabase(FlywayPreparer.forClasspathLocation("db/migration"));
     @Nullable
     private InvoiceService invoiceService;
+    @Nullable
+    private InvoiceItemRepository invoiceItemRepository;
+    @Nullable
+    private InvoiceRepository invoiceRepository;
 
     @Before
     public void setUp() {
         ConnectionInfo connectionInfo = db.getConnectionInfo();
         DataSource dataSource = new DataSource("jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(), "postgres", "postgres");
-        invoiceService = new InvoiceService(new InvoiceRepository(dataSource), new InvoiceItemRepository(dataSource));
+        invoiceItemRepository = new InvoiceItemRepository(dataSource);
+        invoiceRepository = new InvoiceRepository(dataSource);
+        invoiceService = new InvoiceService(invoiceRepository, invoiceItemRepository);
     }
 
     @Test
@@ -71,4 +84,80 @@ public final class InvoiceServiceTests {
         assertNull(value);
         System.out.println();
     }
+
+    @Test
+    public void whenReportsAreRequestedAsyncTheyAreCorrect() {
+        CompletableFuture<InvoiceService.DailyInvoiceSummary> summary = invoiceService.getDailyInvoiceSummaryAsync(
+                LocalDate.of(2019, 8, 1),
+                LocalDate.of(2019, 8, 10)
+        );
+        CompletableFuture<Double> averagePrice = invoiceService.getAveragePriceAsync(
+                LocalDate.of(2018, 5, 20),
+                LocalDate.of(2019, 8, 1)
+        );
+        CompletableFuture<Double> absentAveragePrice = invoiceService.getAveragePriceAsync(
+                LocalDate.of(1970, 2, 1),
+                LocalDate.of(1990, 3, 4)
+        );
+        InvoiceService.InvoiceSummary daySummary = summary.join().getSummary().get(LocalDate.of(2019, 8, 6)).orElseThrow(AssertionError::new);
+        assertEquals(34280, daySummary.getPrice());
+        assertEquals(1040.0, daySummary.getVolume(), 0.001);
+        assertEquals(550.0, averagePrice.join(), 0.001);
+        assertNull(absentAveragePrice.join());
+    }
+
+    @Test
+    public void whenDailySummaryIsMemoizedDayIsRecalculatedOnlyAfterInvalidation() {
+        LocalDate day = LocalDate.of(2019, 8, 6);
+        assertEquals(34280, invoiceService.getDailyInvoiceSummary(LocalDate.of(2019, 8, 5), LocalDate.of(2019, 8, 7)).getSummary().get(day).map(InvoiceService.InvoiceSummary::getPrice).orElse(-1L).longValue());
+
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("memo", "6", "1", 10, 2)));
+        InvoiceService.DailyInvoiceSummary summary = invoiceService.getDailyInvoiceSummary(LocalDate.of(2019, 8, 1), LocalDate.of(2019, 8, 10));
+        assertEquals(34280, summary.getSummary().get(day).map(InvoiceService.InvoiceSummary::getPrice).orElse(-1L).longValue());
+        assertTrue(summary.getSummary().get(LocalDate.of(2019, 8, 2)).isPresent());
+
+        invoiceService.invalidateDailySummary(day);
+        InvoiceService.InvoiceSummary daySummary = invoiceService.getDailyInvoiceSummaryAsync(LocalDate.of(2019, 8, 1), LocalDate.of(2019, 8, 10))
+                .join()
+                .getSummary()
+                .get(day)
+                .orElseThrow(AssertionError::new);
+        assertEquals(34300, daySummary.getPrice());
+        assertEquals(1042.0, daySummary.getVolume(), 0.001);
+    }
+
+    @Test
+    public void whenSummaryIsAggregatedByDatabaseItEqualsSummaryOfLoadedRows() {
+        // product ends with .5, so it checks rounding half up
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("half", "6", "1", 3, 0.5)));
+        Map<String, LocalDate> invoiceDates = invoiceRepository.findAll()
+                .stream()
+                .collect(toMap(Invoice::getId, i -> i.getDate().atZone(ZoneId.systemDefault()).toLocalDate()));
+        Map<LocalDate, Long> prices = new HashMap<>();
+        Map<LocalDate, Double> volumes = new HashMap<>();
+        for (InvoiceItem invoiceItem : invoiceItemRepository.findAll()) {
+            LocalDate day = invoiceDates.get(invoiceItem.getInvoiceId());
+            prices.merge(day, Math.round(invoiceItem.getPrice() * invoiceItem.getVolume()), Long::sum);
+            volumes.merge(day, invoiceItem.getVolume(), Double::sum);
+        }
+
+        Map<LocalDate, Optional<InvoiceService.InvoiceSummary>> summary = invoiceService.getDailyInvoiceSummary(LocalDate.of(2000, 1, 1), LocalDate.of(2030, 1, 1)).getSummary();
+        assertEquals(prices.keySet(), summary.keySet());
+        for (LocalDate day : prices.keySet()) {
+            InvoiceService.InvoiceSummary daySummary = summary.get(day).orElseThrow(AssertionError::new);
+            assertEquals(prices.get(day).longValue(), daySummary.getPrice());
+            assertEquals(volumes.get(day), daySummary.getVolume(), 0.001);
+        }
+    }
+
+    @Test
+    public void whenInvoiceItemIsMovedToAnotherInvoiceItIsReportedByNewDate() {
+        InvoiceItem invoiceItem = invoiceItemRepository.findById("12").orElseThrow(AssertionError::new);
+        // invoice 1 is of 2019-01-02
+        invoiceItem.setInvoiceId("1");
+        assertTrue(invoiceItemRepository.update(invoiceItem));
+        InvoiceService.DailyInvoiceSummary summary = invoiceService.getDailyInvoiceSummary(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 8, 10));
+        assertEquals(14280, summary.getSummary().get(LocalDate.of(2019, 8, 6)).map(InvoiceService.InvoiceSummary::getPrice).orElse(-1L).longValue());
+        assertTrue(summary.getSummary().get(LocalDate.of(2019, 1, 2)).map(InvoiceService.InvoiceSummary::getPrice).orElse(-1L) >= 20000);
+    }
 }
@@ -0,0 +1,110 @@
+package com.zzzkvidi4.storage;
+
+import com.opentable.db.postgres.embedded.ConnectionInfo;
+import com.opentable.db.postgres.embedded.FlywayPreparer;
+import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
+import com.opentable.db.postgres.junit.PreparedDbRule;
+import com.zzzkvidi4.storage.metrics.Histogram;
+import com.zzzkvidi4.storage.metrics.HistogramMetricsRecorder;
+import com.zzzkvidi4.storage.metrics.Metric;
+import com.zzzkvidi4.storage.model.Organization;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.DataSourceSettings;
+import com.zzzkvidi4.storage.repository.OrganizationRepository;
+import com.zzzkvidi4.storage.service.OrganizationService;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public final class MetricsTests {
+    @Rule
+    @NotNull
+    public PreparedDbRule db = EmbeddedPostgresRules.preparedDatabase(FlywayPreparer.forClasspathLocation("db/migration"));
+
+    @Test
+    public void whenValuesAreRecordedPercentilesAreWithinPrecision() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; ++value) {
+            histogram.record(value);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000.5, histogram.getMean(), 0.001);
+        assertEquals(50_000, histogram.getValueAtPercentile(50), 50_000 / 32);
+        assertEquals(99_000, histogram.getValueAtPercentile(99), 99_000 / 32);
+        assertEquals(100_000, histogram.getValueAtPercentile(100));
+
+        Histogram small = new Histogram();
+        small.record(3);
+        small.record(5);
+        assertEquals(3, small.getValueAtPercentile(50));
+        assertEquals(5, small.getValueAtPercentile(99));
+        assertEquals(0, new Histogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void whenRecorderIsEnabledRepositoryAndServiceOperationsAreRecorded() {
+        HistogramMetricsRecorder recorder = new HistogramMetricsRecorder();
+        ConnectionInfo connectionInfo = db.getConnectionInfo();
+        DataSource dataSource = new DataSource(
+                "jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(),
+                "postgres",
+                "postgres",
+                DataSourceSettings.builder().metricsRecorder(recorder).build()
+        );
+        OrganizationRepository organizationRepository = new OrganizationRepository(dataSource);
+        Organization organization = new Organization("100", "measured", "100000000", "100");
+        assertTrue(organizationRepository.create(organization));
+        assertTrue(organizationRepository.findById("100").isPresent());
+        assertTrue(organizationRepository.update(organization));
+        assertTrue(organizationRepository.deleteById("100"));
+        int organizationCount = organizationRepository.findAllByQuery("SELECT * FROM organization").size();
+        new OrganizationService(organizationRepository).findTenTheMostActiveOrganizations();
+
+        for (String operation : new String[]{"create", "findById", "update", "deleteById", "findAllByQuery"}) {
+            for (Metric metric : new Metric[]{Metric.ACQUIRE_TIME, Metric.EXECUTE_TIME, Metric.TOTAL_TIME, Metric.ROWS}) {
+                Histogram histogram = recorder.getHistogram("organization", operation, metric);
+                assertNotNull(operation + " " + metric, histogram);
+                assertTrue(operation + " " + metric, histogram.getCount() > 0);
+            }
+        }
+        assertEquals(1, recorder.getHistogram("organization", "findById", Metric.MAPPING_TIME).getCount());
+        assertEquals(0, recorder.getHistogram("organization", "create", Metric.MAPPING_TIME).getCount());
+        assertEquals(organizationCount, recorder.getHistogram("organization", "findAllByQuery", Metric.ROWS).getMax());
+        Histogram report = recorder.getHistogram("OrganizationService", "findTenTheMostActiveOrganizations", Metric.TOTAL_TIME);
+        assertNotNull(report);
+        assertEquals(1, report.getCount());
+        assertTrue(report.getMax() > 0);
+        assertEquals(0, recorder.getHistogram("organization", "create", Metric.FAILED_TIME).getCount());
+    }
+
+    @Test
+    public void whenOperationFailsItIsRecordedAsFailed() {
+        HistogramMetricsRecorder recorder = new HistogramMetricsRecorder();
+        ConnectionInfo connectionInfo = db.getConnectionInfo();
+        DataSource dataSource = new DataSource(
+                "jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(),
+                "postgres",
+                "postgres",
+                DataSourceSettings.builder().metricsRecorder(recorder).build()
+        );
+        OrganizationRepository organizationRepository = new OrganizationRepository(dataSource);
+        try {
+            organizationRepository.create(new Organization("1", "duplicate", "100000000", "100"));
+            fail();
+        } catch (RuntimeException ignored) {
+        }
+        try {
+            organizationRepository.findAllByQuery("SELECT * FROM absent_table");
+            fail();
+        } catch (RuntimeException ignored) {
+        }
+
+        for (String operation : new String[]{"create", "findAllByQuery"}) {
+            assertEquals(operation, 1, recorder.getHistogram("organization", operation, Metric.FAILED_TIME).getCount());
+            assertEquals(operation, 0, recorder.getHistogram("organization", operation, Metric.TOTAL_TIME).getCount());
+        }
+    }
+}
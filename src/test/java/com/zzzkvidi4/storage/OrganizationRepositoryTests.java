@@ -4,17 +4,27 @@ import com.opentable.db.postgres.embedded.FlywayPreparer;
 import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
 import com.opentable.db.postgres.junit.PreparedDbRule;
 import com.zzzkvidi4.storage.model.Organization;
+import com.zzzkvidi4.storage.repository.CacheSettings;
+import com.zzzkvidi4.storage.repository.CacheStatistics;
 import com.zzzkvidi4.storage.repository.DataSource;
 import com.zzzkvidi4.storage.repository.OrganizationRepository;
+import com.zzzkvidi4.storage.repository.Page;
+import com.zzzkvidi4.storage.repository.PageOrder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.*;
 
 public final class OrganizationRepositoryTests {
@@ -27,7 +37,7 @@ public final class OrganizationRepositoryTests {
 
     @Before
     public void setUp() {
-        organizationRepository = new OrganizationRepository(new DataSource("jdbc:postgresql://localhost:" + preparedDbRule.getConnectionInfo().getPort() + "/" + preparedDbRule.getConnectionInfo().getDbName(), "postgres", "postgres"));
+        organizationRepository = new OrganizationRepository(createDataSource());
     }
 
     @Test
@@ -44,6 +54,22 @@ public final class OrganizationRepositoryTests {
         assertFalse(organizationOpt.isPresent());
     }
 
+    @Test
+    public void whenFindAllByIdOnlyExistingEntitiesReturned() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 40000; ++i) {
+            ids.add(String.valueOf(i));
+        }
+        List<String> found = organizationRepository.findAllById(ids).stream().map(Organization::getId).sorted().collect(toList());
+        assertEquals(organizationRepository.findAll().stream().map(Organization::getId).sorted().collect(toList()), found);
+        assertTrue(organizationRepository.findAllById(Arrays.asList("700", "800")).isEmpty());
+
+        OrganizationRepository cachedRepository = new OrganizationRepository(createDataSource(), CacheSettings.DEFAULT);
+        cachedRepository.findById("1");
+        assertEquals(2, cachedRepository.findAllById(Arrays.asList("1", "2", "1")).size());
+        assertEquals(1, cachedRepository.getCacheStatistics().getHits());
+    }
+
     @Test
     public void whenUpdatedExistingEntityItUpdated() {
         Optional<Organization> organizationOpt = organizationRepository.findById("2");
@@ -98,11 +124,117 @@ public final class OrganizationRepositoryTests {
         assertFalse(organizationAfterDelete.stream().anyMatch(o -> "13".equals(o.getId())));
     }
 
+    @Test
+    public void whenStreamedAllEntitiesAreReturned() {
+        List<Organization> organizations = organizationRepository.findAll();
+        try (Stream<Organization> stream = organizationRepository.stream("SELECT * FROM organization WHERE organization_id <> ?", "1")) {
+            assertEquals(organizations.size() - 1, stream.count());
+        }
+        List<Organization> consumed = new ArrayList<>();
+        organizationRepository.forEach("SELECT * FROM organization", consumed::add);
+        assertEquals(organizations, consumed);
+    }
+
+    @Test
+    public void whenWalkedByPagesAllEntitiesAreReturnedInOrder() {
+        List<Organization> expected = organizationRepository.findAll();
+        expected.sort(Comparator.comparing(Organization::getId));
+        List<Organization> walked = new ArrayList<>();
+        Page<Organization, String> page = organizationRepository.findPage((String) null, 4);
+        walked.addAll(page.getContent());
+        while (page.hasNext()) {
+            assertEquals(4, page.getContent().size());
+            page = organizationRepository.findPage(page.getNextCursor(), 4);
+            walked.addAll(page.getContent());
+        }
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    public void whenWalkedByPagesInCustomOrderAllEntitiesAreReturnedInOrder() {
+        List<Organization> expected = organizationRepository.findAll();
+        expected.sort(Comparator.comparing(Organization::getName).reversed());
+        PageOrder order = PageOrder.descending("name");
+        List<Organization> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Organization, String> page = organizationRepository.findPage(order, cursor, 2);
+            walked.addAll(page.getContent());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(expected, walked);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenPageCursorIsMalformedExceptionIsThrown() {
+        organizationRepository.findPage(PageOrder.ascending("name"), "bm90IGEgY3Vyc29y", 2);
+    }
+
+    @Test
+    public void whenCacheIsEnabledFindByIdReadsThroughIt() {
+        DataSource dataSource = createDataSource();
+        OrganizationRepository cachedRepository = new OrganizationRepository(dataSource, CacheSettings.builder().maximumSize(2).build());
+        Organization organization = cachedRepository.findById("1").orElseThrow(AssertionError::new);
+        organization.setName("changed without update");
+        assertEqualsOrganization(cachedRepository.findById("1").orElseThrow(AssertionError::new), "ibm", "111", "111111111", "1");
+        CacheStatistics statistics = cachedRepository.getCacheStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+
+        organization.setName("ibm 2");
+        assertTrue(cachedRepository.update(organization));
+        assertEquals("ibm 2", cachedRepository.findById("1").map(Organization::getName).orElse(null));
+        assertEquals(2, cachedRepository.getCacheStatistics().getHits());
+
+        cachedRepository.findById("2");
+        cachedRepository.findById("3");
+        statistics = cachedRepository.getCacheStatistics();
+        assertEquals(1, statistics.getEvictions());
+        assertEquals(2, statistics.getSize());
+
+        Organization created = new Organization("100", "cached", "100000000", "100");
+        assertTrue(cachedRepository.create(created));
+        assertTrue(cachedRepository.deleteById("100"));
+        assertFalse(cachedRepository.findById("100").isPresent());
+    }
+
+    @Test
+    public void whenCachedEntityIsChangedInRolledBackTransactionCacheIsInvalidated() {
+        DataSource dataSource = createDataSource();
+        OrganizationRepository cachedRepository = new OrganizationRepository(dataSource, CacheSettings.DEFAULT);
+        Organization organization = cachedRepository.findById("1").orElseThrow(AssertionError::new);
+        dataSource.runInTransaction(tx -> {
+            organization.setName("ibm 2");
+            cachedRepository.update(organization);
+            assertEquals("ibm 2", cachedRepository.findById("1").map(Organization::getName).orElse(null));
+            tx.setRollbackOnly();
+        });
+        assertEquals("ibm", cachedRepository.findById("1").map(Organization::getName).orElse(null));
+    }
+
+    @Test
+    public void whenCachedEntityIsUpdatedPartiallyOnlyWrittenColumnsAreCached() {
+        OrganizationRepository cachedRepository = new OrganizationRepository(createDataSource(), CacheSettings.DEFAULT);
+        Organization organization = cachedRepository.findById("1").orElseThrow(AssertionError::new);
+        String account = organization.getAccount();
+        organization.setName("ibm 2");
+        organization.setAccount("00000000000000000000");
+        assertTrue(cachedRepository.updateColumns(organization, Collections.singletonList("name")));
+        Organization cached = cachedRepository.findById("1").orElseThrow(AssertionError::new);
+        assertEquals("ibm 2", cached.getName());
+        assertEquals(account, cached.getAccount());
+    }
+
     @Test(expected = RuntimeException.class)
     public void testDeleteConnectedEntity() {
         organizationRepository.deleteById("1");
     }
 
+    @NotNull
+    private DataSource createDataSource() {
+        return new DataSource("jdbc:postgresql://localhost:" + preparedDbRule.getConnectionInfo().getPort() + "/" + preparedDbRule.getConnectionInfo().getDbName(), "postgres", "postgres");
+    }
+
     private void assertEqualsOrganization(@NotNull Organization organization, @NotNull String name, @NotNull String account, @NotNull String itn, @NotNull String id) {
         assertEquals(name, organization.getName());
         assertEquals(account, organization.getAccount());
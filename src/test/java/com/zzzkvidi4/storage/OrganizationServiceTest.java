@@ -4,9 +4,13 @@ import com.opentable.db.postgres.embedded.ConnectionInfo;
 import com.opentable.db.postgres.embedded.FlywayPreparer;
 import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
 import com.opentable.db.postgres.junit.PreparedDbRule;
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
 import com.zzzkvidi4.storage.model.Item;
 import com.zzzkvidi4.storage.model.Organization;
 import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
 import com.zzzkvidi4.storage.repository.OrganizationRepository;
 import com.zzzkvidi4.storage.repository.Pair;
 import com.zzzkvidi4.storage.service.OrganizationService;
@@ -16,11 +20,19 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static java.util.Arrays.asList;
@@ -35,6 +47,10 @@ public final class OrganizationServiceTest {
     private OrganizationService organizationService;
     @Nullable
     private OrganizationRepository organizationRepository;
+    @Nullable
+    private InvoiceRepository invoiceRepository;
+    @Nullable
+    private InvoiceItemRepository invoiceItemRepository;
 
     @Before
     public void setUp() {
@@ -42,6 +58,8 @@ public final class OrganizationServiceTest {
         DataSource dataSource = new DataSource("jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(), "postgres", "postgres");
         organizationRepository = new OrganizationRepository(dataSource);
         organizationService = new OrganizationService(organizationRepository);
+        invoiceRepository = new InvoiceRepository(dataSource);
+        invoiceItemRepository = new InvoiceItemRepository(dataSource);
     }
 
     @Test
@@ -63,6 +81,23 @@ public final class OrganizationServiceTest {
         }
     }
 
+    @Test
+    public void whenGetOrganizationsWithItemsEveryItemIsSharedInstance() {
+        Map<Organization, Set<Item>> organizationsWithItems = organizationService.getOrganizationsWithItems(
+                LocalDate.of(2000, 1, 1),
+                LocalDate.of(2030, 1, 1)
+        );
+        Map<String, Item> itemsById = new HashMap<>();
+        int itemCount = 0;
+        for (Set<Item> items : organizationsWithItems.values()) {
+            for (Item item : items) {
+                assertSame(itemsById.computeIfAbsent(item.getId(), id -> item), item);
+                itemCount++;
+            }
+        }
+        assertTrue(itemCount > itemsById.size());
+    }
+
     @Test
     public void whenGetTenMostActiveOrganizationsListIsCorrect() {
         List<Organization> organizations = organizationService.findTenTheMostActiveOrganizations();
@@ -76,6 +111,53 @@ public final class OrganizationServiceTest {
         }
     }
 
+    @Test
+    public void whenInvoiceItemsAreWrittenMostActiveOrganizationsAreUpdated() {
+        List<String> before = organizationService.findTenTheMostActiveOrganizations().stream().map(Organization::getId).collect(Collectors.toList());
+        Invoice invoice = new Invoice("top", Instant.now(), "7");
+        assertTrue(invoiceRepository.create(invoice));
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("top", "top", "1", 1, 5000)));
+        assertEquals("7", organizationService.findTenTheMostActiveOrganizations().get(0).getId());
+
+        invoice.setOrganization("8");
+        assertTrue(invoiceRepository.update(invoice));
+        List<Organization> organizations = organizationService.findTenTheMostActiveOrganizations();
+        assertEquals("8", organizations.get(0).getId());
+        assertEquals("7", organizations.get(organizations.size() - 1).getId());
+
+        assertTrue(invoiceItemRepository.deleteById("top"));
+        assertEquals(before, organizationService.findTenTheMostActiveOrganizations().stream().map(Organization::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void whenInvoiceItemsAreWrittenInBatchesVolumesEqualRawRows() throws SQLException {
+        List<InvoiceItem> invoiceItems = new ArrayList<>();
+        for (int i = 0; i < 30; ++i) {
+            invoiceItems.add(new InvoiceItem("batch " + i, String.valueOf(4 + i % 10), String.valueOf(1 + i / 10), i, 1.5 * i));
+        }
+        assertEquals(invoiceItems.size(), invoiceItemRepository.copyIn(invoiceItems));
+        assertVolumesEqualRawRows();
+
+        for (int i = 0; i < 10; ++i) {
+            invoiceItems.get(i).setVolume(0.5 * i);
+            invoiceItems.get(10 + i).setPrice(100 + i);
+        }
+        for (int i = 0; i < 4; ++i) {
+            invoiceItems.get(20 + i).setInvoiceId("1");
+            invoiceItems.get(20 + i).setItemId(String.valueOf(4 + i));
+        }
+        invoiceItemRepository.updateAll(invoiceItems);
+        assertVolumesEqualRawRows();
+
+        Invoice invoice = invoiceRepository.findById("12").orElseThrow(AssertionError::new);
+        invoice.setDate(Instant.now());
+        assertTrue(invoiceRepository.update(invoice));
+        assertVolumesEqualRawRows();
+
+        invoiceItemRepository.deleteAllById(invoiceItems.stream().map(InvoiceItem::getId).limit(15).collect(Collectors.toList()));
+        assertVolumesEqualRawRows();
+    }
+
     @Test
     public void whenGetOrganizationsWithMoreItemsItIsCorrect() {
         List<Organization> organizationsWithItemsGreaterThan = organizationService.findOrganizationsWithItemsGreaterThan(asList(new Pair<>("3", 15.0)));
@@ -85,5 +167,43 @@ public final class OrganizationServiceTest {
         organizationsWithItemsGreaterThan = organizationService.findOrganizationsWithItemsGreaterThan(asList(new Pair<>("3", 15.0), new Pair<>("2", 1.0)));
         assertEquals(1, organizationsWithItemsGreaterThan.size());
         assertEquals("2", organizationsWithItemsGreaterThan.get(0).getId());
+
+        // every criterion should be satisfied, even if item repeats
+        assertTrue(organizationService.findOrganizationsWithItemsGreaterThan(asList(new Pair<>("3", 15.0), new Pair<>("3", 1000000.0))).isEmpty());
+    }
+
+    @Test
+    public void whenReportsAreRequestedAsyncTheyMatchSyncReports() {
+        List<Pair<String, Double>> itemsWithVolume = asList(new Pair<>("3", 15.0), new Pair<>("2", 1.0));
+        CompletableFuture<List<Organization>> withItems = organizationService.findOrganizationsWithItemsGreaterThanAsync(itemsWithVolume);
+        CompletableFuture<List<Organization>> mostActive = organizationService.findTenTheMostActiveOrganizationsAsync();
+        CompletableFuture<Map<Organization, Set<Item>>> organizationsWithItems = organizationService.getOrganizationsWithItemsAsync(
+                LocalDate.of(2018, 12, 1),
+                LocalDate.of(2019, 7, 20)
+        );
+        assertEquals(organizationService.findOrganizationsWithItemsGreaterThan(itemsWithVolume), withItems.join());
+        assertEquals(organizationService.findTenTheMostActiveOrganizations(), mostActive.join());
+        assertEquals(organizationService.getOrganizationsWithItems(LocalDate.of(2018, 12, 1), LocalDate.of(2019, 7, 20)), organizationsWithItems.join());
+    }
+
+    private void assertVolumesEqualRawRows() throws SQLException {
+        assertEquals(
+                rows("SELECT i.organization_id, sum(ii.volume), count(*) FROM invoice i " +
+                        "INNER JOIN invoice_item ii ON i.date = ii.invoice_date AND i.invoice_id = ii.invoice_id GROUP BY i.organization_id ORDER BY 1"),
+                rows("SELECT organization_id, volume, item_count FROM organization_volume WHERE item_count > 0 ORDER BY 1")
+        );
+    }
+
+    @NotNull
+    private List<String> rows(@NotNull String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection connection = db.getTestDatabase().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                rows.add(resultSet.getString(1) + " " + resultSet.getBigDecimal(2).stripTrailingZeros() + " " + resultSet.getLong(3));
+            }
+        }
+        return rows;
     }
 }
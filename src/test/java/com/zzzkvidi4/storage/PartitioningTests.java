@@ -0,0 +1,179 @@
+package com.zzzkvidi4.storage;
+
+import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
+import com.opentable.db.postgres.junit.SingleInstancePostgresRule;
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.repository.UpsertResult;
+import com.zzzkvidi4.storage.service.InvoiceRollupService;
+import com.zzzkvidi4.storage.service.InvoiceService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Tests of partitioned layout (db/partitioning), which requires PostgreSQL 13 or later,
+ * so they are skipped unless binaries of it are on classpath, as in partitioningTest task.
+ */
+public final class PartitioningTests {
+    @NotNull
+    private static final String POSTGRES_BINARIES = "/postgres-linux-x86_64.txz";
+    @Rule
+    @NotNull
+    public SingleInstancePostgresRule pg = EmbeddedPostgresRules.singleInstance()
+            .customize(builder -> builder.setPgBinaryResolver((system, hardware) -> PartitioningTests.class.getResourceAsStream(POSTGRES_BINARIES)));
+    @Nullable
+    private InvoiceRepository invoiceRepository;
+    @Nullable
+    private InvoiceItemRepository invoiceItemRepository;
+    @Nullable
+    private InvoiceService invoiceService;
+    @Nullable
+    private InvoiceRollupService invoiceRollupService;
+
+    @BeforeClass
+    public static void checkBinaries() {
+        assumeNotNull(PartitioningTests.class.getResource(POSTGRES_BINARIES));
+    }
+
+    @Test
+    public void whenPartitionedFromStartItemsAreRoutedAndSummarized() throws SQLException {
+        migrate(false);
+        assertItemsAreRoutedAndSummarized();
+    }
+
+    @Test
+    public void whenPartitionedAfterLaterMigrationsTheirTriggersAreKept() throws SQLException {
+        migrate(true);
+        assertTrue(query("SELECT pg_get_triggerdef(oid) FROM pg_trigger WHERE tgname = 'invoice_item_date' AND tgrelid = 'invoice_item'::regclass")
+                .contains("UPDATE OF invoice_id, invoice_date ON"));
+        assertItemsAreRoutedAndSummarized();
+    }
+
+    @Test
+    public void whenInvoiceIsOutOfPartitionsItIsKeptInDefaultPartition() throws SQLException {
+        migrate(false);
+        Instant date = instant(2000, 1, 15);
+        assertTrue(invoiceRepository.create(new Invoice("old", date, "1")));
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("old", "old", "1", 10, 2, date)));
+        assertEquals("invoice_default", query("SELECT tableoid::regclass FROM invoice WHERE invoice_id = 'old'"));
+        assertEquals("invoice_item_default", query("SELECT tableoid::regclass FROM invoice_item WHERE invoice_item_id = 'old'"));
+
+        query("SELECT create_invoice_partitions('2000-01-01')::text");
+        query("SELECT create_invoice_partitions('2000-02-01')::text");
+        assertNull(query("SELECT to_regclass('invoice_p2000_01')::text"));
+        assertEquals("invoice_p2000_02", query("SELECT to_regclass('invoice_p2000_02')::text"));
+        assertEquals("invoice_item_default", query("SELECT tableoid::regclass FROM invoice_item WHERE invoice_item_id = 'old'"));
+    }
+
+    @Test
+    public void whenUpsertedRowsAreMatchedByIdAndDate() throws SQLException {
+        migrate(false);
+        Invoice invoice = invoiceRepository.findById("13").orElseThrow(AssertionError::new);
+        invoice.setOrganization("6");
+        Invoice createdInvoice = new Invoice("upserted", instant(2019, 8, 20), "1");
+        UpsertResult result = invoiceRepository.upsertAll(Arrays.asList(invoice, createdInvoice));
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+
+        InvoiceItem existing = new InvoiceItem("12", "13", "7", 101, 201.5, invoice.getDate());
+        InvoiceItem created = new InvoiceItem("upserted", "upserted", "1", 5, 0.5, createdInvoice.getDate());
+        result = invoiceItemRepository.upsertAll(Arrays.asList(existing, created));
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        existing.setPrice(102);
+        assertEquals(1, invoiceItemRepository.copyInMerging(Collections.singletonList(existing)));
+        assertEquals(existing, invoiceItemRepository.findById("12").orElseThrow(AssertionError::new));
+        assertEquals(created, invoiceItemRepository.findById("upserted").orElseThrow(AssertionError::new));
+        assertEquals("invoice_item_p2019_08", query("SELECT tableoid::regclass FROM invoice_item WHERE invoice_item_id = 'upserted'"));
+    }
+
+    @Test
+    public void whenInvoiceDateIsChangedItemsFollowItWithinMonth() throws SQLException {
+        migrate(false);
+        Invoice invoice = invoiceRepository.findById("13").orElseThrow(AssertionError::new);
+        invoice.setDate(instant(2019, 8, 20));
+        assertTrue(invoiceRepository.update(invoice));
+        assertEquals(invoice.getDate(), invoiceItemRepository.findById("12").map(InvoiceItem::getInvoiceDate).orElse(null));
+
+        // moved row is deleted and inserted, foreign key of items rejects it before PostgreSQL 15
+        invoice.setDate(instant(2019, 9, 20));
+        if (Integer.parseInt(query("SHOW server_version_num")) < 150000) {
+            try {
+                invoiceRepository.update(invoice);
+                fail();
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage().contains("is still referenced from table \"invoice_item\""));
+            }
+        } else {
+            assertTrue(invoiceRepository.update(invoice));
+            assertEquals(invoice.getDate(), invoiceItemRepository.findById("12").map(InvoiceItem::getInvoiceDate).orElse(null));
+        }
+    }
+
+    private void assertItemsAreRoutedAndSummarized() throws SQLException {
+        assertEquals("invoice_p2019_08", query("SELECT tableoid::regclass FROM invoice WHERE invoice_id = '7'"));
+        String volume = query("SELECT volume FROM organization_volume WHERE organization_id = '7'");
+        Instant date = invoiceRepository.findById("7").map(Invoice::getDate).orElseThrow(AssertionError::new);
+        assertTrue(invoiceItemRepository.create(new InvoiceItem("routed", "7", "1", 10, 2, date)));
+        assertEquals("invoice_item_p2019_08", query("SELECT tableoid::regclass FROM invoice_item WHERE invoice_item_id = 'routed'"));
+        assertEquals(0, Double.parseDouble(query("SELECT volume FROM organization_volume WHERE organization_id = '7'")) - Double.parseDouble(volume) - 2, 0.001);
+        try {
+            invoiceItemRepository.create(new InvoiceItem("not routed", "7", "1", 10, 2));
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("invoice_item"));
+        }
+
+        assertEquals(Collections.singletonList(LocalDate.of(2019, 8, 10)), invoiceRollupService.refresh());
+        LocalDate start = LocalDate.of(2019, 1, 1);
+        LocalDate end = LocalDate.of(2020, 1, 1);
+        assertEquals(invoiceService.getAveragePrice(start, end), invoiceRollupService.getAveragePrice(start, end));
+    }
+
+    private void migrate(boolean partitionedLater) {
+        String url = "jdbc:postgresql://localhost:" + pg.getEmbeddedPostgres().getPort() + "/postgres";
+        if (partitionedLater) {
+            Application.main(new String[]{url, "postgres", "postgres"});
+        }
+        Application.main(new String[]{url, "postgres", "postgres", "--partitioned"});
+        DataSource dataSource = new DataSource(url, "postgres", "postgres");
+        invoiceRepository = new InvoiceRepository(dataSource);
+        invoiceItemRepository = new InvoiceItemRepository(dataSource);
+        invoiceService = new InvoiceService(invoiceRepository, invoiceItemRepository);
+        invoiceRollupService = new InvoiceRollupService(invoiceRepository);
+    }
+
+    @Nullable
+    private String query(@NotNull String sql) throws SQLException {
+        try (Connection connection = pg.getEmbeddedPostgres().getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+
+    @NotNull
+    private static Instant instant(int year, int month, int day) {
+        return LocalDateTime.of(year, month, day, 12, 0).atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -0,0 +1,139 @@
+package com.zzzkvidi4.storage;
+
+import com.opentable.db.postgres.embedded.ConnectionInfo;
+import com.opentable.db.postgres.embedded.FlywayPreparer;
+import com.opentable.db.postgres.junit.EmbeddedPostgresRules;
+import com.opentable.db.postgres.junit.PreparedDbRule;
+import com.zzzkvidi4.storage.model.Invoice;
+import com.zzzkvidi4.storage.model.InvoiceItem;
+import com.zzzkvidi4.storage.model.Item;
+import com.zzzkvidi4.storage.repository.DataSource;
+import com.zzzkvidi4.storage.repository.InvoiceItemRepository;
+import com.zzzkvidi4.storage.repository.InvoiceRepository;
+import com.zzzkvidi4.storage.repository.ItemRepository;
+import com.zzzkvidi4.storage.repository.TransactionOptions;
+import com.zzzkvidi4.storage.repository.UnexpectedRollbackException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public final class TransactionTests {
+    @Rule
+    @NotNull
+    public PreparedDbRule db = EmbeddedPostgresRules.preparedDatabase(FlywayPreparer.forClasspathLocation("db/migration"));
+    @Nullable
+    private DataSource dataSource;
+    @Nullable
+    private InvoiceRepository invoiceRepository;
+    @Nullable
+    private InvoiceItemRepository invoiceItemRepository;
+    @Nullable
+    private ItemRepository itemRepository;
+
+    @Before
+    public void setUp() {
+        ConnectionInfo connectionInfo = db.getConnectionInfo();
+        dataSource = new DataSource("jdbc:postgresql://localhost:" + connectionInfo.getPort() + "/" + connectionInfo.getDbName(), "postgres", "postgres");
+        invoiceRepository = new InvoiceRepository(dataSource);
+        invoiceItemRepository = new InvoiceItemRepository(dataSource);
+        itemRepository = new ItemRepository(dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void whenInvoiceIsWrittenInTransactionOneConnectionIsUsed() {
+        long acquired = dataSource.getStatistics().getAcquireCount();
+        dataSource.runInTransaction(tx -> {
+            assertTrue(dataSource.isInTransaction());
+            invoiceRepository.create(new Invoice("tx", Instant.now(), "1"));
+            List<InvoiceItem> invoiceItems = new ArrayList<>();
+            for (int i = 1; i <= 7; ++i) {
+                invoiceItems.add(new InvoiceItem("tx " + i, "tx", String.valueOf(i), i, i));
+            }
+            invoiceItemRepository.createAll(invoiceItems);
+            try (Stream<InvoiceItem> written = invoiceItemRepository.stream("SELECT * FROM invoice_item WHERE invoice_id = ?", "tx")) {
+                assertEquals(7, written.count());
+            }
+        });
+        assertFalse(dataSource.isInTransaction());
+        assertEquals(acquired + 1, dataSource.getStatistics().getAcquireCount());
+        assertEquals(7, invoiceItemRepository.findAllByQuery("SELECT * FROM invoice_item WHERE invoice_id = ?", "tx").size());
+    }
+
+    @Test
+    public void whenTransactionFailsAllChangesAreRolledBack() {
+        try {
+            dataSource.runInTransaction(tx -> {
+                invoiceRepository.create(new Invoice("tx", Instant.now(), "1"));
+                dataSource.runInTransaction(nested -> invoiceItemRepository.create(new InvoiceItem("tx", "tx", "1", 1, 1)));
+                throw new IllegalStateException("failure");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("failure", e.getMessage());
+        }
+        assertFalse(invoiceRepository.findById("tx").isPresent());
+        assertFalse(invoiceItemRepository.findById("tx").isPresent());
+        assertEquals(0, dataSource.getStatistics().getActive());
+
+        dataSource.runInTransaction(tx -> {
+            invoiceRepository.create(new Invoice("tx", Instant.now(), "1"));
+            tx.setRollbackOnly();
+        });
+        assertFalse(invoiceRepository.findById("tx").isPresent());
+    }
+
+    @Test
+    public void whenJoinedScopeFailureIsCaughtTransactionIsRolledBackAndReported() {
+        try {
+            dataSource.runInTransaction(tx -> {
+                invoiceRepository.create(new Invoice("tx", Instant.now(), "1"));
+                try {
+                    dataSource.runInTransaction(nested -> {
+                        throw new IllegalStateException("failure");
+                    });
+                    fail();
+                } catch (IllegalStateException e) {
+                    assertEquals("failure", e.getMessage());
+                }
+            });
+            fail();
+        } catch (UnexpectedRollbackException e) {
+            assertFalse(dataSource.isInTransaction());
+        }
+        assertFalse(invoiceRepository.findById("tx").isPresent());
+        assertEquals(0, dataSource.getStatistics().getActive());
+    }
+
+    @Test
+    public void whenTransactionIsReadOnlySnapshotItSeesNoConcurrentChangesAndRejectsWrites() {
+        int itemCount = dataSource.inTransaction(TransactionOptions.READ_ONLY_SNAPSHOT, tx -> {
+            int before = itemRepository.findAll().size();
+            // runs on another thread, so it is not part of transaction
+            assertTrue(itemRepository.createAsync(new Item("tx", "Pyramid", "tx")).join());
+            assertEquals(before, itemRepository.findAll().size());
+            try {
+                itemRepository.create(new Item("tx 2", "Cone", "tx 2"));
+                fail();
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage().contains("read-only"));
+            }
+            return before;
+        });
+        assertEquals(itemCount + 1, itemRepository.findAll().size());
+    }
+}